@@ -0,0 +1,62 @@
+package org.benf.cfr.benchmarks.corpus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+public class Exceptions {
+    private final Object lock = new Object();
+    private int counter;
+
+    public String firstLine(Reader reader) throws IOException {
+        try (BufferedReader br = new BufferedReader(reader)) {
+            return br.readLine();
+        }
+    }
+
+    public int parse(String s, int fallback) {
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        } catch (NullPointerException e) {
+            return -fallback;
+        } finally {
+            counter++;
+        }
+    }
+
+    public void increment() {
+        synchronized (lock) {
+            counter++;
+            if (counter > 100) {
+                counter = 0;
+            }
+        }
+    }
+
+    public int nested(int[] values) {
+        int res = 0;
+        for (int v : values) {
+            try {
+                try {
+                    res += 10 / v;
+                } finally {
+                    res++;
+                }
+            } catch (ArithmeticException e) {
+                res -= 100;
+                if (res < -1000) break;
+            }
+        }
+        return res;
+    }
+
+    public void rethrow(Runnable r) {
+        try {
+            r.run();
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
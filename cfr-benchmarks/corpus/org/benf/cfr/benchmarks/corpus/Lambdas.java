@@ -0,0 +1,63 @@
+package org.benf.cfr.benchmarks.corpus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class Lambdas<T extends Comparable<T>> {
+    private final List<T> items = new ArrayList<T>();
+
+    public void add(T item) {
+        items.add(item);
+    }
+
+    public List<String> describe(final String prefix) {
+        return items.stream()
+                .filter(x -> x != null)
+                .sorted(Comparator.reverseOrder())
+                .map(x -> prefix + x)
+                .collect(Collectors.toList());
+    }
+
+    public Map<Integer, List<String>> group(List<String> in) {
+        return in.stream().collect(Collectors.groupingBy(String::length));
+    }
+
+    public Supplier<Integer> counter() {
+        final int[] count = new int[1];
+        return () -> ++count[0];
+    }
+
+    public <R> Function<T, R> memo(final Function<T, R> fn) {
+        return new Function<T, R>() {
+            private T lastIn;
+            private R lastOut;
+
+            @Override
+            public R apply(T t) {
+                if (t != null && t.equals(lastIn)) return lastOut;
+                lastIn = t;
+                lastOut = fn.apply(t);
+                return lastOut;
+            }
+        };
+    }
+
+    public T max() {
+        T best = null;
+        for (T item : items) {
+            if (best == null || item.compareTo(best) > 0) best = item;
+        }
+        return best;
+    }
+
+    public class Inner {
+        public int size() {
+            return items.size();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.benf.cfr.benchmarks.corpus;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class Loops {
+    public int nested(int[][] grid) {
+        int total = 0;
+        outer:
+        for (int y = 0; y < grid.length; ++y) {
+            for (int x = 0; x < grid[y].length; ++x) {
+                if (grid[y][x] < 0) continue outer;
+                if (grid[y][x] == 0) break outer;
+                total += grid[y][x];
+            }
+        }
+        return total;
+    }
+
+    public int doWhile(int n) {
+        int steps = 0;
+        do {
+            n = (n % 2 == 0) ? n / 2 : 3 * n + 1;
+            steps++;
+        } while (n != 1 && steps < 1000);
+        return steps;
+    }
+
+    public String iterate(Map<String, List<Integer>> map) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+            int sum = 0;
+            for (Integer i : entry.getValue()) {
+                if (i == null) continue;
+                sum += i;
+            }
+            sb.append(entry.getKey()).append('=').append(sum).append(';');
+        }
+        return sb.toString();
+    }
+
+    public void removeNegative(List<Integer> list) {
+        Iterator<Integer> it = list.iterator();
+        while (it.hasNext()) {
+            if (it.next() < 0) it.remove();
+        }
+    }
+
+    public long whileTrue(long[] values) {
+        int i = 0;
+        long acc = 1;
+        while (true) {
+            if (i >= values.length) return acc;
+            long v = values[i++];
+            if (v == 0) continue;
+            acc *= v;
+            if (acc > 1000000L) break;
+        }
+        return -acc;
+    }
+}
@@ -0,0 +1,67 @@
+package org.benf.cfr.benchmarks.corpus;
+
+public class Switches {
+    public enum Colour { RED, GREEN, BLUE, CYAN }
+
+    public int table(int x) {
+        switch (x) {
+            case 0: return 10;
+            case 1:
+            case 2: x *= 3;
+            case 3: return x + 1;
+            case 5: break;
+            default: x = -x;
+        }
+        return x;
+    }
+
+    public int lookup(int x) {
+        int res = 0;
+        switch (x) {
+            case -1000: res = 1; break;
+            case 17: res = 2; break;
+            case 99999: res = 3;
+            case 123456: res += 4; break;
+        }
+        return res;
+    }
+
+    public String strings(String s) {
+        switch (s) {
+            case "alpha": return "a";
+            case "beta": return "b";
+            case "Aa":
+            case "BB": return "collision";
+            default: return s.toUpperCase();
+        }
+    }
+
+    public boolean enums(Colour c) {
+        switch (c) {
+            case RED:
+            case GREEN:
+                return true;
+            case BLUE:
+                return false;
+            default:
+                throw new IllegalArgumentException(c.name());
+        }
+    }
+
+    public int nested(int a, int b) {
+        switch (a) {
+            case 1:
+                switch (b) {
+                    case 1: return 11;
+                    case 2: return 12;
+                }
+                break;
+            case 2:
+                for (int i = 0; i < b; ++i) {
+                    if (i == 7) return i;
+                }
+                break;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,59 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.entities.ClassFile;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.bytestream.BaseByteData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Constructing a ClassFile from raw bytes - constant pool indexing, fields, methods and attributes.
+ * Nothing is analysed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassFileParseBenchmark {
+    @Param({"Loops", "Switches", "Exceptions", "Lambdas"})
+    public String className;
+
+    private Corpus corpus;
+    private String path;
+    private byte[] content;
+    private DCCommonState state;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        corpus = new Corpus();
+        path = Corpus.getPath(className);
+        content = Corpus.getClass(path);
+    }
+
+    /*
+     * A ClassFile registers itself with the state's type tables, so don't let those grow over the whole trial.
+     */
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        state = corpus.newState();
+    }
+
+    @Benchmark
+    public ClassFile parse() {
+        return new ClassFile(new BaseByteData(content), path, state);
+    }
+}
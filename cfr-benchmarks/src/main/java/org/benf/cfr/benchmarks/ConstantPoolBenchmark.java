@@ -0,0 +1,71 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.entities.constantpool.ConstantPool;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.bytestream.BaseByteData;
+import org.benf.cfr.reader.util.bytestream.ByteData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The constant pool on its own.  Entries are decoded on demand, so 'index' is just the cost of finding entry
+ * boundaries, and 'decodeAll' is what a class which touches every entry pays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstantPoolBenchmark {
+    private static final int CP_COUNT_OFFSET = 8;
+    private static final int CP_OFFSET = 10;
+
+    @Param({"Loops", "Switches", "Exceptions", "Lambdas"})
+    public String className;
+
+    private Corpus corpus;
+    private ByteData raw;
+    private int count;
+    private DCCommonState state;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        corpus = new Corpus();
+        BaseByteData data = new BaseByteData(Corpus.getClass(Corpus.getPath(className)));
+        raw = data.getOffsetData(CP_OFFSET);
+        count = data.getU2At(CP_COUNT_OFFSET);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        state = corpus.newState();
+    }
+
+    @Benchmark
+    public ConstantPool index() {
+        return new ConstantPool(null, state, raw, count);
+    }
+
+    @Benchmark
+    public void decodeAll(Blackhole blackhole) {
+        ConstantPool cp = new ConstantPool(null, state, raw, count);
+        // The second slot of a long / double is empty.
+        for (int x = 1; x < count; ++x) {
+            blackhole.consume(cp.getEntry(x));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.api.ClassFileSource;
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
+import org.benf.cfr.reader.state.ClassFileSourceImpl;
+import org.benf.cfr.reader.state.ClassFileSourceWrapper;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * The fixed set of class files the benchmarks run over - see README.md.
+ *
+ * Corpus classes are served from memory, anything else (java.lang.Object etc) comes from the runtime as usual,
+ * so a benchmark sees the same world as a normal run of CFR over the corpus would.
+ */
+public class Corpus implements ClassFileSource {
+    private static final String ROOT = "corpus/";
+
+    private static Map<String, byte[]> classes;
+
+    private final Options options;
+    private final ClassFileSource fallback;
+
+    public Corpus() {
+        this(new HashMap<String, String>());
+    }
+
+    public Corpus(Map<String, String> opts) {
+        this.options = OptionsImpl.getFactory().create(opts);
+        this.fallback = new ClassFileSourceImpl(options);
+    }
+
+    /*
+     * Path (eg org/benf/cfr/benchmarks/corpus/Loops.class) -> content, in index order.
+     */
+    public static synchronized Map<String, byte[]> getClasses() {
+        if (classes == null) {
+            try {
+                classes = Collections.unmodifiableMap(load());
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't load benchmark corpus", e);
+            }
+        }
+        return classes;
+    }
+
+    public static byte[] getClass(String path) {
+        byte[] res = getClasses().get(path);
+        if (res == null) throw new IllegalArgumentException("Not in corpus: " + path);
+        return res;
+    }
+
+    /*
+     * Benchmark parameters name classes by simple name - Loops rather than org/benf/.../Loops.class.
+     */
+    public static String getPath(String simpleName) {
+        String suffix = "/" + simpleName + ".class";
+        for (String path : getClasses().keySet()) {
+            if (path.endsWith(suffix)) return path;
+        }
+        throw new IllegalArgumentException("Not in corpus: " + simpleName);
+    }
+
+    private static Map<String, byte[]> load() throws IOException {
+        Map<String, byte[]> res = new LinkedHashMap<String, byte[]>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(open("index.txt"), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                res.put(line, readFully(open(line)));
+            }
+        } finally {
+            reader.close();
+        }
+        return res;
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream is = Corpus.class.getClassLoader().getResourceAsStream(ROOT + name);
+        if (is == null) throw new IOException("Missing corpus resource " + name);
+        return is;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer)) >= 0) {
+                baos.write(buffer, 0, len);
+            }
+            return baos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    /*
+     * A fresh state has no cached classes - so anything the benchmark loads is really loaded.
+     */
+    public DCCommonState newState() {
+        return new DCCommonState(options, new ClassFileSourceWrapper(this));
+    }
+
+    @Override
+    public void informAnalysisRelativePathDetail(String usePath, String classFilePath) {
+    }
+
+    @Override
+    public Collection<String> addJar(String jarPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getPossiblyRenamedPath(String path) {
+        return path;
+    }
+
+    @Override
+    public Pair<byte[], String> getClassFileContent(String path) throws IOException {
+        byte[] content = getClasses().get(path);
+        if (content != null) return Pair.make(content, path);
+        return fallback.getClassFileContent(path);
+    }
+}
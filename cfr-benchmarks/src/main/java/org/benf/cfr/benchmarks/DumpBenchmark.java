@@ -0,0 +1,68 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.entities.ClassFile;
+import org.benf.cfr.reader.entities.Method;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.state.TypeUsageCollectingDumper;
+import org.benf.cfr.reader.state.TypeUsageInformation;
+import org.benf.cfr.reader.util.output.IllegalIdentifierDump;
+import org.benf.cfr.reader.util.output.MethodErrorCollector;
+import org.benf.cfr.reader.util.output.StringStreamDumper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Emitting java for a class which has already been fully analysed, into memory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DumpBenchmark {
+    private static final MethodErrorCollector IGNORE_ERRORS = new MethodErrorCollector() {
+        @Override
+        public void addSummaryError(Method method, String s) {
+        }
+    };
+
+    @Param({"Loops", "Switches", "Exceptions", "Lambdas"})
+    public String className;
+
+    private Corpus corpus;
+    private ClassFile classFile;
+    private TypeUsageInformation typeUsageInformation;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        corpus = new Corpus();
+        DCCommonState state = corpus.newState();
+        ClassFile c = state.getClassFileMaybePath(Corpus.getPath(className));
+        state.configureWith(c);
+        c.loadInnerClasses(state);
+        TypeUsageCollectingDumper collectingDumper = new TypeUsageCollectingDumper(corpus.getOptions(), c);
+        c.analyseTop(state, collectingDumper);
+        classFile = c;
+        typeUsageInformation = collectingDumper.getRealTypeUsageInformation();
+    }
+
+    @Benchmark
+    public StringBuilder dump() {
+        StringBuilder sb = new StringBuilder();
+        classFile.dump(new StringStreamDumper(IGNORE_ERRORS, sb, typeUsageInformation, corpus.getOptions(), IllegalIdentifierDump.Nop.getInstance()));
+        return sb;
+    }
+}
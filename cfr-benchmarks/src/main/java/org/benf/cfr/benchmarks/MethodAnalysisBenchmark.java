@@ -0,0 +1,71 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.bytecode.analysis.opgraph.Op04StructuredStatement;
+import org.benf.cfr.reader.entities.ClassFile;
+import org.benf.cfr.reader.entities.Method;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.bytestream.BaseByteData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Full analysis of a single method - Op01 -> Op02 (including stack population) -> Op03 rewriting -> Op04
+ * structuring and transforms.  Op02StackBenchmark covers stack population on its own.
+ *
+ * Analysis is cached on the method, so every invocation has to parse the class again - that's included, see
+ * ClassFileParseBenchmark for what it costs.  The state is shared, and warmed by analysing the method once
+ * during setup, so that loading the JDK classes the method refers to isn't measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodAnalysisBenchmark {
+    @Param({
+            "Loops#nested", "Loops#iterate", "Loops#whileTrue",
+            "Switches#table", "Switches#strings", "Switches#enums",
+            "Exceptions#parse", "Exceptions#nested", "Exceptions#increment",
+            "Lambdas#describe", "Lambdas#memo"
+    })
+    public String method;
+
+    private DCCommonState state;
+    private String path;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws NoSuchMethodException {
+        int idx = method.indexOf('#');
+        state = new Corpus().newState();
+        path = Corpus.getPath(method.substring(0, idx));
+        content = Corpus.getClass(path);
+        analyse();
+    }
+
+    @Benchmark
+    public Op04StructuredStatement analyse() throws NoSuchMethodException {
+        ClassFile classFile = new ClassFile(new BaseByteData(content), path, state);
+        return getMethod(classFile, method).getAnalysis();
+    }
+
+    static Method getMethod(ClassFile classFile, String method) throws NoSuchMethodException {
+        List<Method> methods = classFile.getMethodByName(method.substring(method.indexOf('#') + 1));
+        if (methods.size() != 1) throw new IllegalStateException("Ambiguous method " + method);
+        return methods.get(0);
+    }
+}
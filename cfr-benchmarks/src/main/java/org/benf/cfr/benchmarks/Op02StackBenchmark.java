@@ -0,0 +1,126 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.bytecode.analysis.loc.BytecodeLocFactoryStub;
+import org.benf.cfr.reader.bytecode.analysis.opgraph.Op01WithProcessedDataAndByteJumps;
+import org.benf.cfr.reader.bytecode.analysis.opgraph.Op02WithProcessedDataAndRefs;
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.BlockIdentifierFactory;
+import org.benf.cfr.reader.bytecode.opcode.JVMInstr;
+import org.benf.cfr.reader.entities.ClassFile;
+import org.benf.cfr.reader.entities.Method;
+import org.benf.cfr.reader.entities.attributes.AttributeCode;
+import org.benf.cfr.reader.entities.constantpool.ConstantPool;
+import org.benf.cfr.reader.entities.exceptions.ExceptionAggregator;
+import org.benf.cfr.reader.util.DecompilerComment;
+import org.benf.cfr.reader.util.DecompilerComments;
+import org.benf.cfr.reader.util.bytestream.OffsettingByteData;
+import org.benf.cfr.reader.util.getopt.Options;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Op02 stack population for a single method.
+ *
+ * CodeAnalyser builds the Op02 graph inline, so the graph is built here from the same public pieces it uses -
+ * decode the Op01 instructions, link jumps, insert exception blocks.  That skips what CodeAnalyser does for
+ * unverifiable jumps and lambda getClass calls, neither of which the corpus has any use for.
+ *
+ * populateStackInfo resets whatever a previous run left behind, (it has to, as it's rerun after JSR
+ * processing), so the graph is built once, and reused.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Op02StackBenchmark {
+    @Param({
+            "Loops#nested", "Loops#iterate", "Loops#whileTrue",
+            "Switches#table", "Switches#strings", "Switches#enums",
+            "Exceptions#parse", "Exceptions#nested", "Exceptions#increment",
+            "Lambdas#describe", "Lambdas#memo"
+    })
+    public String method;
+
+    private Method toPopulate;
+    private List<Op02WithProcessedDataAndRefs> op2list;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws NoSuchMethodException {
+        String path = Corpus.getPath(method.substring(0, method.indexOf('#')));
+        ClassFile classFile = new Corpus().newState().getClassFile(path);
+        toPopulate = MethodAnalysisBenchmark.getMethod(classFile, method);
+        op2list = getOp02Graph(toPopulate);
+        populate();
+    }
+
+    @Benchmark
+    public DecompilerComment populate() {
+        return Op02WithProcessedDataAndRefs.populateStackInfo(op2list, toPopulate);
+    }
+
+    private static List<Op02WithProcessedDataAndRefs> getOp02Graph(Method method) {
+        AttributeCode code = method.getCodeAttribute();
+        ConstantPool cp = code.getConstantPool();
+        Options options = cp.getDCCommonState().getOptions();
+
+        // As CodeAnalyser, with a sentinel nop at the start.
+        List<Op01WithProcessedDataAndByteJumps> instrs = new ArrayList<Op01WithProcessedDataAndByteJumps>();
+        instrs.add(JVMInstr.NOP.createOperation(null, cp, -1));
+        OffsettingByteData bdCode = code.getRawData().getOffsettingOffsetData(0);
+        int offset = 0;
+        do {
+            Op01WithProcessedDataAndByteJumps instr = JVMInstr.find(bdCode.getS1At(0)).createOperation(bdCode, cp, offset);
+            instrs.add(instr);
+            offset += instr.getInstructionLength();
+            bdCode.advance(instr.getInstructionLength());
+        } while (offset < code.getCodeLength());
+
+        SortedMap<Integer, Integer> lutByOffset = new TreeMap<Integer, Integer>();
+        Map<Integer, Integer> lutByIdx = new HashMap<Integer, Integer>();
+        int rawOffset = -1;
+        for (int x = 0; x < instrs.size(); ++x) {
+            lutByOffset.put(rawOffset, x);
+            lutByIdx.put(x, rawOffset);
+            rawOffset += instrs.get(x).getInstructionLength();
+        }
+        lutByIdx.put(0, -1);
+        lutByOffset.put(-1, 0);
+
+        List<Op02WithProcessedDataAndRefs> res = new ArrayList<Op02WithProcessedDataAndRefs>();
+        for (int x = 0; x < instrs.size(); ++x) {
+            res.add(instrs.get(x).createOp2(cp, x, BytecodeLocFactoryStub.INSTANCE, method));
+        }
+        for (int x = 0; x < instrs.size(); ++x) {
+            Op02WithProcessedDataAndRefs source = res.get(x);
+            for (int targetIdx : instrs.get(x).getAbsoluteIndexJumps(lutByIdx.get(x), lutByOffset)) {
+                if (targetIdx >= res.size()) continue;
+                Op02WithProcessedDataAndRefs target = res.get(targetIdx);
+                source.addTarget(target);
+                target.addSource(source);
+            }
+        }
+
+        ExceptionAggregator exceptions = new ExceptionAggregator(code.getExceptionTableEntries(), new BlockIdentifierFactory(),
+                lutByOffset, instrs, options, cp, new DecompilerComments());
+        return Op02WithProcessedDataAndRefs.insertExceptionBlocks(res, exceptions, lutByOffset, cp, code.getCodeLength(), options);
+    }
+}
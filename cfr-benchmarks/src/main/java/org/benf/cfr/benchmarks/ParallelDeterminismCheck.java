@@ -0,0 +1,90 @@
+package org.benf.cfr.benchmarks;
+
+import org.benf.cfr.reader.api.CfrDriver;
+import org.benf.cfr.reader.api.OutputSinkFactory;
+import org.benf.cfr.reader.api.SinkReturns;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Not a benchmark - decompiles a real jar once in order, then repeatedly with --threads, and fails if any parallel
+ * run differs from the sequential one.  Races usually only show up on a jar of some size, and not every time.
+ *
+ * java -cp target/benchmarks.jar org.benf.cfr.benchmarks.ParallelDeterminismCheck some.jar [threads] [runs]
+ */
+public class ParallelDeterminismCheck {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ParallelDeterminismCheck <jar> [threads] [runs]");
+            System.exit(2);
+        }
+        String jar = args[0];
+        String threads = args.length > 1 ? args[1] : "4";
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        Map<String, String> expected = decompile(jar, "1");
+        int failures = 0;
+        for (int run = 1; run <= runs; ++run) {
+            Map<String, String> actual = decompile(jar, threads);
+            List<String> differing = compare(expected, actual);
+            System.out.println("Run " + run + " (--threads " + threads + "): " + actual.size() + " classes, " + differing.size() + " differ");
+            for (String name : differing) {
+                System.out.println("  " + name);
+            }
+            if (!differing.isEmpty()) failures++;
+        }
+        if (failures > 0) System.exit(1);
+    }
+
+    private static List<String> compare(Map<String, String> expected, Map<String, String> actual) {
+        List<String> res = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            if (!entry.getValue().equals(actual.get(entry.getKey()))) res.add(entry.getKey());
+        }
+        for (String name : actual.keySet()) {
+            if (!expected.containsKey(name)) res.add(name);
+        }
+        return res;
+    }
+
+    private static Map<String, String> decompile(String jar, String threads) {
+        final Map<String, String> res = new LinkedHashMap<String, String>();
+        OutputSinkFactory sinkFactory = new OutputSinkFactory() {
+            @Override
+            public List<SinkClass> getSupportedSinks(SinkType sinkType, Collection<SinkClass> available) {
+                if (sinkType == SinkType.JAVA) return Collections.singletonList(SinkClass.DECOMPILED);
+                return Collections.singletonList(SinkClass.STRING);
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public <T> Sink<T> getSink(SinkType sinkType, SinkClass sinkClass) {
+                if (sinkType == SinkType.JAVA && sinkClass == SinkClass.DECOMPILED) {
+                    return (Sink<T>) new Sink<SinkReturns.Decompiled>() {
+                        @Override
+                        public void write(SinkReturns.Decompiled sinkable) {
+                            res.put(sinkable.getPackageName() + "." + sinkable.getClassName(), sinkable.getJava());
+                        }
+                    };
+                }
+                return new Sink<T>() {
+                    @Override
+                    public void write(T sinkable) {
+                    }
+                };
+            }
+        };
+        Map<String, String> options = new HashMap<String, String>();
+        options.put("threads", threads);
+        CfrDriver driver = new CfrDriver.Builder().withOptions(options).withOutputSink(sinkFactory).build();
+        driver.analyse(Collections.singletonList(jar));
+        return res;
+    }
+}
@@ -4,8 +4,10 @@ import org.benf.cfr.reader.api.CfrDriver;
 import org.benf.cfr.reader.api.ClassFileSource;
 import org.benf.cfr.reader.api.OutputSinkFactory;
 import org.benf.cfr.reader.apiunreleased.ClassFileSource2;
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
 import org.benf.cfr.reader.state.ClassFileSourceChained;
 import org.benf.cfr.reader.state.ClassFileSourceImpl;
+import org.benf.cfr.reader.state.ClassFileSourcePrefetching;
 import org.benf.cfr.reader.state.ClassFileSourceWrapper;
 import org.benf.cfr.reader.state.DCCommonState;
 import org.benf.cfr.reader.util.AnalysisType;
@@ -15,6 +17,7 @@ import org.benf.cfr.reader.util.output.DumperFactory;
 import org.benf.cfr.reader.util.output.InternalDumperFactoryImpl;
 import org.benf.cfr.reader.util.output.SinkDumperFactory;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,25 +27,43 @@ public class CfrDriverImpl implements CfrDriver {
     private final Options options;
     private final ClassFileSource2 classFileSource;
     private final OutputSinkFactory outputSinkFactory;
+    // If we've created our own source, we're responsible for releasing its resources.
+    private final ClassFileSourceImpl ownedSource;
+    private final ClassFileSourcePrefetching prefetchingSource;
 
     public CfrDriverImpl(ClassFileSource source, OutputSinkFactory outputSinkFactory, Options options, boolean fallbackToDefaultSource) {
         if (options == null) {
             options = new OptionsImpl(new HashMap<String, String>());
         }
         ClassFileSource2 tmpSource;
+        ClassFileSourceImpl tmpOwnedSource = null;
         if (source == null) {
-            tmpSource = new ClassFileSourceImpl(options);
+            tmpSource = tmpOwnedSource = new ClassFileSourceImpl(options);
         } else {
             tmpSource = source instanceof ClassFileSource2 ? (ClassFileSource2)source : new ClassFileSourceWrapper(source);
             if (fallbackToDefaultSource) {
-                tmpSource = new ClassFileSourceChained(Arrays.asList(tmpSource, new ClassFileSourceImpl(options)));
+                tmpOwnedSource = new ClassFileSourceImpl(options);
+                tmpSource = new ClassFileSourceChained(Arrays.asList(tmpSource, tmpOwnedSource));
             }
         }
+        ClassFileSourcePrefetching tmpPrefetchingSource = null;
+        // We can't assume a user supplied source is safe to call from more than one thread.
+        if (source == null && options.getOption(OptionsImpl.PREFETCH_CLASSES)) {
+            tmpSource = tmpPrefetchingSource = new ClassFileSourcePrefetching(tmpSource);
+        }
+        this.prefetchingSource = tmpPrefetchingSource;
+        this.ownedSource = tmpOwnedSource;
         this.outputSinkFactory = outputSinkFactory;
         this.options = options;
         this.classFileSource = tmpSource;
     }
 
+    private DumperFactory getDumperFactory() {
+        return outputSinkFactory != null ?
+                new SinkDumperFactory(outputSinkFactory, options) :
+                new InternalDumperFactoryImpl(options);
+    }
+
     @Override
     public void analyse(List<String> toAnalyse) {
         /*
@@ -54,26 +75,35 @@ public class CfrDriverImpl implements CfrDriver {
         boolean skipInnerClass = toAnalyse.size() > 1 && options.getOption(OptionsImpl.SKIP_BATCH_INNER_CLASSES);
 
         Collections.sort(toAnalyse);
-        for (String path : toAnalyse) {
-            // TODO : We shouldn't have to discard state here.  But we do, because
-            // it causes test fails.  (used class name table retains useful symbols).
-            classFileSource.informAnalysisRelativePathDetail(null, null);
-            // Note - both of these need to be reset, as they have caches.
-            DCCommonState dcCommonState = new DCCommonState(options, classFileSource);
-            DumperFactory dumperFactory = outputSinkFactory != null ?
-                    new SinkDumperFactory(outputSinkFactory, options) :
-                    new InternalDumperFactoryImpl(options);
+        // Unlike everything else, timings are collected over all inputs.
+        AnalysisProfile analysisProfile = AnalysisProfile.create(options);
+        try {
+            for (String path : toAnalyse) {
+                // TODO : We shouldn't have to discard state here.  But we do, because
+                // it causes test fails.  (used class name table retains useful symbols).
+                classFileSource.informAnalysisRelativePathDetail(null, null);
+                // Note - both of these need to be reset, as they have caches.
+                DCCommonState dcCommonState = new DCCommonState(options, classFileSource, analysisProfile);
+                DumperFactory dumperFactory = getDumperFactory();
 
-            AnalysisType type = options.getOption(OptionsImpl.ANALYSE_AS);
-            if (type == null || type == AnalysisType.DETECT) {
-                type = dcCommonState.detectClsJar(path);
-            }
+                AnalysisType type = options.getOption(OptionsImpl.ANALYSE_AS);
+                if (type == null || type == AnalysisType.DETECT) {
+                    // Only when detecting - an explicitly given type is used as is.
+                    type = new File(path).isDirectory() ? AnalysisType.DIRECTORY : dcCommonState.detectClsJar(path);
+                }
 
-            if (type == AnalysisType.JAR || type == AnalysisType.WAR) {
-                Driver.doJar(dcCommonState, path, type, dumperFactory);
-            } else if (type == AnalysisType.CLASS) {
-                Driver.doClass(dcCommonState, path, skipInnerClass, dumperFactory);
+                if (type == AnalysisType.JAR || type == AnalysisType.WAR || type == AnalysisType.BOOTJAR || type == AnalysisType.DIRECTORY) {
+                    Driver.doJar(dcCommonState, path, type, dumperFactory);
+                } else if (type == AnalysisType.CLASS) {
+                    Driver.doClass(dcCommonState, path, skipInnerClass, dumperFactory);
+                }
+            }
+            if (analysisProfile != null) {
+                getDumperFactory().getAnalysisTimingsDumper().dump(analysisProfile);
             }
+        } finally {
+            if (prefetchingSource != null) prefetchingSource.close();
+            if (ownedSource != null) ownedSource.close();
         }
     }
 }
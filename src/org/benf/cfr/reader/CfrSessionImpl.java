@@ -0,0 +1,80 @@
+package org.benf.cfr.reader;
+
+import org.benf.cfr.reader.api.CfrSession;
+import org.benf.cfr.reader.api.OutputSinkFactory;
+import org.benf.cfr.reader.mapping.MappingFactory;
+import org.benf.cfr.reader.state.ClassFileSourceImpl;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+import org.benf.cfr.reader.util.output.SinkDumperFactory;
+
+import java.util.HashMap;
+
+/*
+ * Parsed classes refer to each other, and to types shared through the state's class cache, so they can't usefully
+ * be evicted individually - once over the ceiling, we drop the whole state.  The class file source keeps the raw
+ * content of library classes (bounded separately), so starting again isn't as cold as the first request.
+ */
+public class CfrSessionImpl implements CfrSession {
+    private final Options options;
+    private final long memoryCeiling;
+    private final ClassFileSourceImpl classFileSource;
+    // Guarded by this.
+    private DCCommonState dcCommonState;
+
+    public CfrSessionImpl(Options options, long memoryCeiling) {
+        if (options == null) {
+            options = new OptionsImpl(new HashMap<String, String>());
+        }
+        this.options = options;
+        this.memoryCeiling = memoryCeiling;
+        // Jars may change while we're running, (see invalidate), so mustn't be mapped.
+        this.classFileSource = new ClassFileSourceImpl(options, false);
+    }
+
+    private DCCommonState getState() {
+        if (dcCommonState == null) {
+            classFileSource.informAnalysisRelativePathDetail(null, null);
+            DCCommonState base = new DCCommonState(options, classFileSource);
+            dcCommonState = new DCCommonState(base, MappingFactory.get(options, base));
+        }
+        return dcCommonState;
+    }
+
+    @Override
+    public void decompileClass(String className, OutputSinkFactory output) {
+        decompile(className, null, output);
+    }
+
+    @Override
+    public void decompileMethod(String className, String methodName, OutputSinkFactory output) {
+        decompile(className, methodName, output);
+    }
+
+    private synchronized void decompile(String className, String methodName, OutputSinkFactory output) {
+        DCCommonState state = getState();
+        Driver.doSessionClass(state, className, methodName, new SinkDumperFactory(output, options));
+        if (state.getLoadedClassBytes() > memoryCeiling) {
+            dcCommonState = null;
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String jarPath) {
+        classFileSource.invalidate(jarPath);
+        dcCommonState = null;
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        classFileSource.invalidateAll();
+        dcCommonState = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        classFileSource.close();
+        dcCommonState = null;
+    }
+}
@@ -1,5 +1,7 @@
 package org.benf.cfr.reader;
 
+import org.benf.cfr.reader.bytecode.AnalysisNest;
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.bytecode.analysis.types.InnerClassInfo;
 import org.benf.cfr.reader.bytecode.analysis.types.JavaTypeInstance;
 import org.benf.cfr.reader.entities.ClassFile;
@@ -8,8 +10,10 @@ import org.benf.cfr.reader.mapping.MappingFactory;
 import org.benf.cfr.reader.mapping.ObfuscationMapping;
 import org.benf.cfr.reader.relationship.MemberNameResolver;
 import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.state.JarTypeStream;
 import org.benf.cfr.reader.state.TypeUsageCollectingDumper;
 import org.benf.cfr.reader.state.TypeUsageInformation;
+import org.benf.cfr.reader.state.TypeUsageInformationEmpty;
 import org.benf.cfr.reader.util.AnalysisType;
 import org.benf.cfr.reader.util.CannotLoadClassException;
 import org.benf.cfr.reader.util.CfrVersionInfo;
@@ -17,24 +21,42 @@ import org.benf.cfr.reader.util.MiscConstants;
 import org.benf.cfr.reader.util.MiscUtils;
 import org.benf.cfr.reader.util.collections.Functional;
 import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.MapFactory;
 import org.benf.cfr.reader.util.collections.SetFactory;
 import org.benf.cfr.reader.util.functors.BinaryFunction;
 import org.benf.cfr.reader.util.functors.Predicate;
 import org.benf.cfr.reader.util.getopt.Options;
 import org.benf.cfr.reader.util.getopt.OptionsImpl;
+import org.benf.cfr.reader.util.output.DecompilationCache;
 import org.benf.cfr.reader.util.output.Dumper;
 import org.benf.cfr.reader.util.output.DumperFactory;
 import org.benf.cfr.reader.util.output.ExceptionDumper;
 import org.benf.cfr.reader.util.output.IllegalIdentifierDump;
+import org.benf.cfr.reader.util.output.MethodErrorCollector;
 import org.benf.cfr.reader.util.output.NopSummaryDumper;
 import org.benf.cfr.reader.util.output.ProgressDumper;
+import org.benf.cfr.reader.util.output.StringStreamDumper;
 import org.benf.cfr.reader.util.output.SummaryDumper;
 import org.benf.cfr.reader.util.output.ToStringDumper;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 class Driver {
 
@@ -54,11 +76,8 @@ class Driver {
         ObfuscationMapping mapping = MappingFactory.get(options, dcCommonState);
         dcCommonState = new DCCommonState(dcCommonState, mapping);
 
-        IllegalIdentifierDump illegalIdentifierDump = IllegalIdentifierDump.Factory.get(options);
-        Dumper d = new ToStringDumper(); // sentinel dumper.
         ExceptionDumper ed = dumperFactory.getExceptionDumper();
         try {
-            SummaryDumper summaryDumper = new NopSummaryDumper();
             ClassFile c = dcCommonState.getClassFileMaybePath(path);
             if (skipInnerClass && c.isInnerClass()) return;
 
@@ -73,25 +92,57 @@ class Driver {
             } catch (CannotLoadClassException ignore) {
             }
 
-            if (options.getOption(OptionsImpl.DECOMPILE_INNER_CLASSES)) {
-                c.loadInnerClasses(dcCommonState);
-            }
-            if (options.getOption(OptionsImpl.RENAME_DUP_MEMBERS)) {
-                MemberNameResolver.resolveNames(dcCommonState, ListFactory.newList(dcCommonState.getClassCache().getLoadedTypes()));
-            }
+            analyseAndDumpClass(dcCommonState, c, options.getOption(OptionsImpl.METHODNAME), dumperFactory);
+        } catch (Exception e) {
+            ed.noteException(path, null, e);
+        }
+    }
 
-            TypeUsageCollectingDumper collectingDumper = new TypeUsageCollectingDumper(options, c);
-            c.analyseTop(dcCommonState, collectingDumper);
+    /*
+     * A single class (or method of it) for a CfrSession - the state is kept between requests, so we have to drop
+     * the class afterwards, as analysis will have changed it.
+     */
+    static void doSessionClass(DCCommonState dcCommonState, String className, String methodName, DumperFactory dumperFactory) {
+        ExceptionDumper ed = dumperFactory.getExceptionDumper();
+        ClassFile c = null;
+        try {
+            c = dcCommonState.getClassFileMaybePath(className);
+            dumperFactory.getProgressDumper().analysingType(c.getClassType());
+            analyseAndDumpClass(dcCommonState, c, methodName, dumperFactory);
+        } catch (Exception e) {
+            ed.noteException(className, null, e);
+        } finally {
+            if (c != null) dcCommonState.forgetAnalysedClass(c);
+        }
+    }
 
-            TypeUsageInformation typeUsageInformation = collectingDumper.getRealTypeUsageInformation();
+    private static void analyseAndDumpClass(DCCommonState dcCommonState, ClassFile c, String methname, DumperFactory dumperFactory) {
+        Options options = dcCommonState.getOptions();
+        IllegalIdentifierDump illegalIdentifierDump = IllegalIdentifierDump.Factory.get(options);
+        SummaryDumper summaryDumper = new NopSummaryDumper();
+        // Not confined to the nest here (see AnalysisNest), but that's still where most changes will be.
+        for (ClassFile member : c.getNest(dcCommonState, null).values()) {
+            member.markTouched();
+        }
+        if (options.getOption(OptionsImpl.DECOMPILE_INNER_CLASSES)) {
+            c.loadInnerClasses(dcCommonState);
+        }
+        if (options.getOption(OptionsImpl.RENAME_DUP_MEMBERS)) {
+            MemberNameResolver.resolveNames(dcCommonState, ListFactory.newList(dcCommonState.getClassCache().getLoadedTypes()));
+        }
+
+        TypeUsageCollectingDumper collectingDumper = new TypeUsageCollectingDumper(options, c);
+        c.analyseTop(dcCommonState, collectingDumper);
 
-            d = dumperFactory.getNewTopLevelDumper(c.getClassType(), summaryDumper, typeUsageInformation, illegalIdentifierDump);
+        TypeUsageInformation typeUsageInformation = collectingDumper.getRealTypeUsageInformation();
+
+        Dumper d = dumperFactory.getNewTopLevelDumper(c.getClassType(), summaryDumper, typeUsageInformation, illegalIdentifierDump);
+        try {
             d = dcCommonState.getObfuscationMapping().wrap(d);
             if (options.getOption(OptionsImpl.TRACK_BYTECODE_LOC)) {
                 d = dumperFactory.wrapLineNoDumper(d);
             }
 
-            String methname = options.getOption(OptionsImpl.METHODNAME);
             if (methname == null) {
                 c.dump(d);
             } else {
@@ -104,10 +155,8 @@ class Driver {
                 }
             }
             d.print("");
-        } catch (Exception e) {
-            ed.noteException(path, null, e);
         } finally {
-            if (d != null) d.close();
+            d.close();
         }
     }
 
@@ -124,7 +173,15 @@ class Driver {
             summaryDumper.notify("Summary for " + path);
             summaryDumper.notify(MiscConstants.CFR_HEADER_BRA + " " + CfrVersionInfo.VERSION_INFO);
             progressDumper.analysingPath(path);
-            Map<Integer, List<JavaTypeInstance>> clstypes = dcCommonState.explicitlyLoadJar(path, analysisType);
+            JarTypeStream streamed = canStreamJar(options) ? dcCommonState.streamJar(path, analysisType) : null;
+            if (streamed != null && !streamed.isMultiRelease()) {
+                // Only one version, so nothing collides, and there are no missing outers to add.
+                doJarStreamedTypes(dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, progressDumper, streamed);
+                return;
+            }
+            Map<Integer, List<JavaTypeInstance>> clstypes = streamed != null ?
+                    streamed.getTypesByVersion() :
+                    dcCommonState.explicitlyLoadJar(path, analysisType);
             Set<JavaTypeInstance> versionCollisions = getVersionCollisions(clstypes);
             dcCommonState.setCollisions(versionCollisions);
             List<Integer> versionsSeen = ListFactory.newList();
@@ -148,6 +205,55 @@ class Driver {
         }
     }
 
+    /*
+     * The decompilation cache and member renaming need to see every type in the jar before analysing any.
+     */
+    private static boolean canStreamJar(Options options) {
+        return options.getOption(OptionsImpl.STREAM_JAR) &&
+                options.getOption(OptionsImpl.CACHE_DIR) == null &&
+                !options.getOption(OptionsImpl.RENAME_DUP_MEMBERS) &&
+                !options.getOption(OptionsImpl.RENAME_ENUM_MEMBERS);
+    }
+
+    /*
+     * Types are analysed as they're seen - the jar filter is applied as we go.
+     */
+    private static void doJarStreamedTypes(DCCommonState dcCommonState, DumperFactory dumperFactory, IllegalIdentifierDump illegalIdentifierDump, SummaryDumper summaryDumper, ProgressDumper progressDumper, final Iterator<JavaTypeInstance> streamed) {
+        Options options = dcCommonState.getOptions();
+        final Predicate<String> matcher = MiscUtils.mkRegexFilter(options.getOption(OptionsImpl.JAR_FILTER), true);
+        Iterator<JavaTypeInstance> types = new Iterator<JavaTypeInstance>() {
+            private JavaTypeInstance next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && streamed.hasNext()) {
+                    JavaTypeInstance type = streamed.next();
+                    if (matcher.test(type.getRawName())) next = type;
+                }
+                return next != null;
+            }
+
+            @Override
+            public JavaTypeInstance next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                JavaTypeInstance res = next;
+                next = null;
+                return res;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        int threads = options.getOption(OptionsImpl.ANALYSIS_THREADS);
+        if (threads > 1) {
+            doJarVersionTypesParallel(threads, dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, progressDumper, types, null);
+        } else {
+            doJarVersionTypesSequential(dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, progressDumper, types, null);
+        }
+    }
+
     /*
      * If there are any inner classes in values which are orphaned, then we want to
      * additionally add their outer classes, to ensure that they are not skipped as
@@ -187,9 +293,7 @@ class Driver {
 
     private static void doJarVersionTypes(int forVersion, final List<Integer> versionsSeen, DCCommonState dcCommonState, DumperFactory dumperFactory, IllegalIdentifierDump illegalIdentifierDump, SummaryDumper summaryDumper, ProgressDumper progressDumper, List<JavaTypeInstance> types) {
         Options options = dcCommonState.getOptions();
-        final boolean lomem = options.getOption(OptionsImpl.LOMEM);
         final Predicate<String> matcher = MiscUtils.mkRegexFilter(options.getOption(OptionsImpl.JAR_FILTER), true);
-        final boolean silent = options.getOption(OptionsImpl.SILENT);
 
         // If we're dumping a class which is SPECIFIC to a version, i.e. other than 0, we override the common state
         // so that it will look up in all version going back from that.
@@ -217,6 +321,9 @@ class Driver {
             });
         }
 
+        // Multi release versions are resolved through the fallback above, so don't map simply onto class content.
+        CacheLookup cacheLookup = forVersion == 0 && dumperFactory.producesPlainText() ? CacheLookup.create(dcCommonState, types) : null;
+
         types = Functional.filter(types, new Predicate<JavaTypeInstance>() {
             @Override
             public boolean test(JavaTypeInstance in) {
@@ -231,12 +338,20 @@ class Driver {
                 options.getOption(OptionsImpl.RENAME_ENUM_MEMBERS)) {
             MemberNameResolver.resolveNames(dcCommonState, types);
         }
-        /*
-         * If we're working on a case insensitive file system (OH COME ON!) then make sure that
-         * we don't have any collisions.
-         */
-        for (JavaTypeInstance type : types) {
+        int threads = options.getOption(OptionsImpl.ANALYSIS_THREADS);
+        if (threads > 1 && types.size() > 1) {
+            doJarVersionTypesParallel(threads, dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, progressDumper, types.iterator(), cacheLookup);
+            return;
+        }
+        doJarVersionTypesSequential(dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, progressDumper, types.iterator(), cacheLookup);
+    }
+
+    private static void doJarVersionTypesSequential(DCCommonState dcCommonState, DumperFactory dumperFactory, IllegalIdentifierDump illegalIdentifierDump, SummaryDumper summaryDumper, ProgressDumper progressDumper, Iterator<JavaTypeInstance> types, CacheLookup cacheLookup) {
+        final boolean silent = dcCommonState.getOptions().getOption(OptionsImpl.SILENT);
+        while (types.hasNext()) {
+            JavaTypeInstance type = types.next();
             Dumper d = new ToStringDumper();  // Sentinel dumper.
+            dcCommonState.pinClass(type);
             try {
                 ClassFile c = dcCommonState.getClassFile(type);
                 // Don't explicitly dump inner classes.  But make sure we ask the CLASS if it's
@@ -246,36 +361,305 @@ class Driver {
                     continue;
                 }
                 if (!silent) {
-                    type = dcCommonState.getObfuscationMapping().get(type);
-                    progressDumper.analysingType(type);
-                }
-                if (options.getOption(OptionsImpl.DECOMPILE_INNER_CLASSES)) {
-                    c.loadInnerClasses(dcCommonState);
-                }
-
-                TypeUsageCollectingDumper collectingDumper = new TypeUsageCollectingDumper(options, c);
-                c.analyseTop(dcCommonState, collectingDumper);
-
-                JavaTypeInstance classType = c.getClassType();
-                classType = dcCommonState.getObfuscationMapping().get(classType);
-                TypeUsageInformation typeUsageInformation = collectingDumper.getRealTypeUsageInformation();
-                d = dumperFactory.getNewTopLevelDumper(classType, summaryDumper, typeUsageInformation, illegalIdentifierDump);
-                d = dcCommonState.getObfuscationMapping().wrap(d);
-
-                c.dump(d);
-                d.newln();
-                d.newln();
-                if (lomem) {
-                    c.releaseCode();
+                    progressDumper.analysingType(dcCommonState.getObfuscationMapping().get(type));
                 }
+                AnalysedType analysed = analyseType(dcCommonState, c, cacheLookup, false);
+                d = dumpType(dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, analysed, cacheLookup);
             } catch (Dumper.CannotCreate e) {
                 throw e;
             } catch (RuntimeException e) {
                 d.print(e.toString()).newln().newln().newln();
             } finally {
+                dcCommonState.unpinClass(type);
                 if (d != null) d.close();
             }
 
         }
     }
+
+    /*
+     * Analysis of top level classes happens on a worker pool, but we consume the results (and dump them) in the
+     * original order on this thread, so output (and the summary) is identical to the sequential case.
+     *
+     * We only allow a window of classes to be in flight beyond the one we're waiting to dump, otherwise a slow
+     * class early on would let us accumulate the analysed state of most of the jar.
+     *
+     * Analysing a class changes classes it's bound up with, (eg the synthetic outer argument of an inner class
+     * constructor is hidden), and classes which refer to those see the change.  So a class doesn't start until
+     * every earlier class which it refers to, or which refers to it, is done - exactly what it would have seen
+     * had we gone in order.  Those are always ahead of it in the pool's queue, so can't be waiting on it.
+     * Analysis never changes anything outside the class and its inner classes, (see AnalysisNest), so that's all
+     * the ordering we need.
+     */
+    private static void doJarVersionTypesParallel(int threads, final DCCommonState dcCommonState, DumperFactory dumperFactory, IllegalIdentifierDump illegalIdentifierDump, SummaryDumper summaryDumper, ProgressDumper progressDumper, Iterator<JavaTypeInstance> typeIterator, final CacheLookup cacheLookup) {
+        Options options = dcCommonState.getOptions();
+        final boolean silent = options.getOption(OptionsImpl.SILENT);
+        int window = threads * 4;
+        AnalysisOrdering ordering = new AnalysisOrdering(dcCommonState);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new AnalysisThreadFactory());
+        try {
+            LinkedList<Pair<JavaTypeInstance, Future<AnalysedType>>> pending = new LinkedList<Pair<JavaTypeInstance, Future<AnalysedType>>>();
+            while (typeIterator.hasNext() || !pending.isEmpty()) {
+                while (pending.size() < window && typeIterator.hasNext()) {
+                    final JavaTypeInstance type = typeIterator.next();
+                    // Unpinned once dumped, below.
+                    dcCommonState.pinClass(type);
+                    final ClassFile c;
+                    final List<CountDownLatch> waitFor;
+                    final CountDownLatch done = new CountDownLatch(1);
+                    try {
+                        c = dcCommonState.getClassFile(type);
+                        waitFor = c.isInnerClass() ? null : ordering.add(c, done);
+                    } catch (RuntimeException e) {
+                        pending.add(Pair.make(type, failed(e)));
+                        continue;
+                    }
+                    pending.add(Pair.make(type, waitFor == null ? null : executor.submit(new Callable<AnalysedType>() {
+                        @Override
+                        public AnalysedType call() throws InterruptedException {
+                            try {
+                                for (CountDownLatch latch : waitFor) {
+                                    latch.await();
+                                }
+                                return analyseType(dcCommonState, c, cacheLookup, true);
+                            } finally {
+                                done.countDown();
+                            }
+                        }
+                    })));
+                }
+                Pair<JavaTypeInstance, Future<AnalysedType>> next = pending.removeFirst();
+                Dumper d = new ToStringDumper();  // Sentinel dumper.
+                try {
+                    AnalysedType analysed = next.getSecond() == null ? null : getAnalysed(next.getSecond());
+                    if (analysed == null) {
+                        d = null;
+                        continue;
+                    }
+                    if (!silent) {
+                        progressDumper.analysingType(dcCommonState.getObfuscationMapping().get(next.getFirst()));
+                    }
+                    d = dumpType(dcCommonState, dumperFactory, illegalIdentifierDump, summaryDumper, analysed, cacheLookup);
+                } catch (Dumper.CannotCreate e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    d.print(e.toString()).newln().newln().newln();
+                } finally {
+                    dcCommonState.unpinClass(next.getFirst());
+                    if (d != null) d.close();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Future<AnalysedType> failed(final RuntimeException e) {
+        FutureTask<AnalysedType> res = new FutureTask<AnalysedType>(new Callable<AnalysedType>() {
+            @Override
+            public AnalysedType call() {
+                throw e;
+            }
+        });
+        res.run();
+        return res;
+    }
+
+    private static AnalysedType getAnalysed(Future<AnalysedType> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /*
+     * If we've previously decompiled exactly this class, we can skip analysis altogether.
+     *
+     * Parallel analysis confines the class to its nest, (see AnalysisNest).
+     */
+    private static AnalysedType analyseType(DCCommonState dcCommonState, ClassFile c, CacheLookup cacheLookup, boolean parallel) {
+        String cacheKey = null;
+        if (cacheLookup != null) {
+            cacheKey = cacheLookup.getKey(c);
+            DecompilationCache.Entry cached = cacheKey == null ? null : cacheLookup.cache.get(cacheKey);
+            if (cached != null) {
+                return new AnalysedType(c, null, cacheKey, cached);
+            }
+        }
+
+        Options options = dcCommonState.getOptions();
+        AnalysisNest nest = AnalysisNest.enter(dcCommonState, c, parallel);
+        try {
+            if (options.getOption(OptionsImpl.DECOMPILE_INNER_CLASSES)) {
+                c.loadInnerClasses(dcCommonState);
+            }
+            TypeUsageCollectingDumper collectingDumper = new TypeUsageCollectingDumper(options, c);
+            c.analyseTop(dcCommonState, collectingDumper);
+            return new AnalysedType(c, collectingDumper, cacheKey, null);
+        } finally {
+            nest.exit();
+        }
+    }
+
+    private static Dumper dumpType(DCCommonState dcCommonState, DumperFactory dumperFactory, IllegalIdentifierDump illegalIdentifierDump, SummaryDumper summaryDumper, AnalysedType analysed, CacheLookup cacheLookup) {
+        ClassFile c = analysed.classFile;
+        JavaTypeInstance classType = c.getClassType();
+        classType = dcCommonState.getObfuscationMapping().get(classType);
+
+        if (analysed.cached != null) {
+            Dumper d = dumperFactory.getNewTopLevelDumper(classType, summaryDumper, TypeUsageInformationEmpty.INSTANCE, illegalIdentifierDump);
+            analysed.cached.replay(d, classType, c.getMethods(), summaryDumper);
+            return d;
+        }
+
+        TypeUsageInformation typeUsageInformation = analysed.collectingDumper.getRealTypeUsageInformation();
+        Dumper d = dumperFactory.getNewTopLevelDumper(classType, summaryDumper, typeUsageInformation, illegalIdentifierDump);
+        if (analysed.cacheKey != null) {
+            /*
+             * Render to a string, so we can store it - and emit that, so that output is the same whether or not
+             * we hit the cache.
+             */
+            DecompilationCache.Recorder recorder = new DecompilationCache.Recorder(new MethodErrorCollector.SummaryDumperMethodErrorCollector(classType, summaryDumper));
+            Dumper recording = new StringStreamDumper(recorder, recorder.getStringBuilder(), typeUsageInformation, dcCommonState.getOptions(), illegalIdentifierDump);
+            recording = dcCommonState.getObfuscationMapping().wrap(recording);
+            c.dump(recording);
+            recording.newln();
+            recording.newln();
+            DecompilationCache.Entry entry = recorder.getEntry();
+            cacheLookup.cache.put(analysed.cacheKey, entry);
+            entry.replay(d, classType, ListFactory.<Method>newList(), new NopSummaryDumper());
+        } else {
+            d = dcCommonState.getObfuscationMapping().wrap(d);
+            c.dump(d);
+            d.newln();
+            d.newln();
+        }
+        if (dcCommonState.getOptions().getOption(OptionsImpl.LOMEM)) {
+            c.releaseCode();
+        }
+        return d;
+    }
+
+    private static class AnalysedType {
+        private final ClassFile classFile;
+        private final TypeUsageCollectingDumper collectingDumper;
+        private final String cacheKey;
+        private final DecompilationCache.Entry cached;
+
+        private AnalysedType(ClassFile classFile, TypeUsageCollectingDumper collectingDumper, String cacheKey, DecompilationCache.Entry cached) {
+            this.classFile = classFile;
+            this.collectingDumper = collectingDumper;
+            this.cacheKey = cacheKey;
+            this.cached = cached;
+        }
+    }
+
+    /*
+     * The cache key for a top level class covers its inner classes - we don't know for sure what they are
+     * without analysis, so take anything in the jar which looks like one by name.
+     */
+    private static class CacheLookup {
+        private final DecompilationCache cache;
+        private final DCCommonState dcCommonState;
+        private final NavigableSet<String> names;
+
+        private CacheLookup(DecompilationCache cache, DCCommonState dcCommonState, NavigableSet<String> names) {
+            this.cache = cache;
+            this.dcCommonState = dcCommonState;
+            this.names = names;
+        }
+
+        static CacheLookup create(DCCommonState dcCommonState, List<JavaTypeInstance> types) {
+            DecompilationCache cache = DecompilationCache.create(dcCommonState.getOptions());
+            if (cache == null) return null;
+            NavigableSet<String> names = new TreeSet<String>();
+            for (JavaTypeInstance type : types) {
+                names.add(type.getRawName());
+            }
+            return new CacheLookup(cache, dcCommonState, names);
+        }
+
+        /*
+         * Null if we can't read the content - in which case we won't try to cache.
+         */
+        String getKey(ClassFile c) {
+            String name = c.getClassType().getRawName();
+            List<byte[]> contents = ListFactory.newList();
+            try {
+                contents.add(dcCommonState.getRawClassFileContent(name));
+                for (String inner : names.subSet(name + MiscConstants.INNER_CLASS_SEP_STR, false, name + MiscConstants.INNER_CLASS_SEP_STR + Character.MAX_VALUE, false)) {
+                    contents.add(dcCommonState.getRawClassFileContent(inner));
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            return cache.getKey(contents);
+        }
+    }
+
+    /*
+     * Which earlier top level classes (with their nests, see AnalysisNest) are bound up with each one, by way of
+     * constant pool references in either direction.
+     *
+     * Classes which only refer to the same thing aren't ordered against each other - analysis only changes the nest
+     * being analysed, so neither can see what the other did.  AnalysisNest makes sure of that.
+     */
+    private static class AnalysisOrdering {
+        private final DCCommonState dcCommonState;
+        private final Map<String, CountDownLatch> analysedBy = MapFactory.newMap();
+        private final Map<String, List<CountDownLatch>> referencedBy = MapFactory.newMap();
+
+        private AnalysisOrdering(DCCommonState dcCommonState) {
+            this.dcCommonState = dcCommonState;
+        }
+
+        /*
+         * Returns what c must wait for.  done must be counted down once it's been analysed.
+         */
+        List<CountDownLatch> add(ClassFile c, CountDownLatch done) {
+            Set<String> references = SetFactory.newOrderedSet();
+            Set<String> members = c.getNest(dcCommonState, references).keySet();
+            references.removeAll(members);
+
+            Set<CountDownLatch> res = SetFactory.newOrderedSet();
+            for (String reference : references) {
+                CountDownLatch latch = analysedBy.get(reference);
+                if (latch != null) res.add(latch);
+            }
+            for (String member : members) {
+                List<CountDownLatch> latches = referencedBy.get(member);
+                if (latches != null) res.addAll(latches);
+                analysedBy.put(member, done);
+            }
+            for (String reference : references) {
+                List<CountDownLatch> latches = referencedBy.get(reference);
+                if (latches == null) {
+                    latches = ListFactory.newList();
+                    referencedBy.put(reference, latches);
+                }
+                latches.add(done);
+            }
+            res.remove(done);
+            return ListFactory.newList(res);
+        }
+    }
+
+    private static class AnalysisThreadFactory implements ThreadFactory {
+        private int idx = 0;
+
+        @Override
+        public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "cfr-analysis-" + idx++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
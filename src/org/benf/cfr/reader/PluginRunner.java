@@ -78,6 +78,11 @@ public class PluginRunner {
             return new StringStreamDumper(new SummaryDumperMethodErrorCollector(classType, summaryDumper), outBuffer, typeUsageInformation, options, this.illegalIdentifierDump);
         }
 
+        @Override
+        public boolean producesPlainText() {
+            return true;
+        }
+
         @Override
         public Dumper wrapLineNoDumper(Dumper dumper) {
             return dumper;
@@ -102,6 +107,13 @@ public class PluginRunner {
             return new StdErrExceptionDumper();
         }
 
+        @Override
+        public AnalysisTimingsDumper getAnalysisTimingsDumper() {
+            if (!options.optionIsSet(OptionsImpl.OUTPUT_DIR)) return AnalysisTimingsDumperNop.INSTANCE;
+
+            return new FileAnalysisTimingsDumper(options.getOption(OptionsImpl.OUTPUT_DIR));
+        }
+
         @Override
         public DumperFactory getFactoryWithPrefix(String prefix, int version) {
             return this;
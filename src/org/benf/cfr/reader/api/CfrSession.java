@@ -0,0 +1,112 @@
+package org.benf.cfr.reader.api;
+
+import org.benf.cfr.reader.CfrSessionImpl;
+import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+
+import java.util.Map;
+
+/**
+ * A long lived decompiler, for embedding (eg in an IDE, or a code browsing service) where many requests are made
+ * against the same class path.
+ *
+ * Unlike {@link CfrDriver}, which starts from nothing for every input, a session keeps the class path scan, the
+ * content of library classes, and parsed classes and types warm between requests.  Requests are served one at a
+ * time.
+ *
+ * Classes are found on the class path - use the "extraclasspath" option to add to it.
+ *
+ * Note that because state is retained, output may differ very slightly from a cold {@link CfrDriver} run - for
+ * instance, local variable names are chosen to avoid collisions with classes which have been seen.
+ *
+ * Instances should be constructed by using {@link Builder}.
+ */
+@SuppressWarnings("unused")
+public interface CfrSession {
+    /**
+     * Decompile a single class, (and its inner classes), to {@code output}.
+     *
+     * @param className fully qualified name, or path, of the class.
+     * @param output see {@link OutputSinkFactory}
+     */
+    void decompileClass(String className, OutputSinkFactory output);
+
+    /**
+     * Decompile methods of a class with a given name.
+     *
+     * @param className fully qualified name, or path, of the class.
+     * @param methodName name of method - all overloads will be emitted.
+     * @param output see {@link OutputSinkFactory}
+     */
+    void decompileMethod(String className, String methodName, OutputSinkFactory output);
+
+    /**
+     * A jar on the class path has changed - anything which may have come from it will be re-read.
+     *
+     * @param jarPath path to the jar.
+     */
+    void invalidate(String jarPath);
+
+    /**
+     * Discard all retained state.
+     */
+    void invalidateAll();
+
+    /**
+     * Release resources, (open jars etc).  The session may continue to be used, but will start cold.
+     */
+    void close();
+
+    /**
+     * Builder for {@link CfrSession}
+     *
+     * Note that *all* parameters are optional.
+     */
+    class Builder {
+        Options builtOptions = null;
+        long memoryCeiling = DEFAULT_MEMORY_CEILING;
+
+        private static final long DEFAULT_MEMORY_CEILING = 64 * 1024 * 1024;
+
+        /**
+         * A map, equivalent to the command line options that are passed to CFR.
+         * See {@link CfrDriver.Builder#withOptions(Map)}.
+         *
+         * @param options map of options
+         * @return this builder.
+         */
+        public Builder withOptions(Map<String, String> options) {
+            this.builtOptions = OptionsImpl.getFactory().create(options);
+            return this;
+        }
+
+        /**
+         * Note - the {@code Options} interface is *not* guaranteed to be stable.
+         * @param options previously built options.
+         * @return this builder.
+         */
+        public Builder withBuiltOptions(Options options) {
+            this.builtOptions = options;
+            return this;
+        }
+
+        /**
+         * Once the class files loaded into retained state exceed this size, the state is discarded, (after the
+         * request which took it over).  Parsed classes take several times the size of their class file.
+         *
+         * @param bytes total size of class files.
+         * @return this builder.
+         */
+        public Builder withMemoryCeiling(long bytes) {
+            this.memoryCeiling = bytes;
+            return this;
+        }
+
+        /**
+         * @return Constructed instance of {@link CfrSession}
+         */
+        public CfrSession build() {
+            return new CfrSessionImpl(builtOptions, memoryCeiling);
+        }
+    }
+}
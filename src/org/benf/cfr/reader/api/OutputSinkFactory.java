@@ -41,7 +41,16 @@ public interface OutputSinkFactory {
          *
          * see {@link org.benf.cfr.reader.api.SinkReturns.LineNumberMapping} for further details.
          */
-        LINE_NUMBER_MAPPING(SinkReturns.LineNumberMapping.class);
+        LINE_NUMBER_MAPPING(SinkReturns.LineNumberMapping.class),
+        /**
+         * Sink will accept {@link org.benf.cfr.reader.api.SinkReturns.PhaseTiming}s, totalled over all methods.
+         */
+        PHASE_TIMING(SinkReturns.PhaseTiming.class),
+        /**
+         * Sink will accept {@link org.benf.cfr.reader.api.SinkReturns.MethodPhaseTiming}s, one per phase of each
+         * of the slowest method analysis passes (see analysistimingsmethods), slowest first.
+         */
+        METHOD_PHASE_TIMING(SinkReturns.MethodPhaseTiming.class);
 
         /**
          * Get the type of message that the sink will be expected to take.
@@ -66,7 +75,9 @@ public interface OutputSinkFactory {
         /** This sink will receive any exceptions that occur */
         EXCEPTION,
         /** This sink will receive line number information */
-        LINENUMBER
+        LINENUMBER,
+        /** This sink will receive analysis timings, once analysis is complete (if requested) */
+        ANALYSIS_TIMINGS
     }
 
     /**
@@ -108,6 +108,53 @@ public interface SinkReturns {
         NavigableMap<Integer, Integer> getClassFileMappings();
     }
 
+    /**
+     * Time spent in one phase of method analysis.  (see the analysistimings option).
+     *
+     * Time spent analysing other methods on which this one depends is not included.
+     */
+    interface PhaseTiming {
+        /**
+         * @return name of the analysis phase.
+         */
+        String getPhase();
+
+        /**
+         * @return recovery pass index - 0 is the initial analysis, later passes are only attempted if earlier ones
+         * fail.
+         */
+        int getRecoveryPass();
+
+        /**
+         * @return number of times the phase was entered.
+         */
+        long getInvocationCount();
+
+        /**
+         * @return wall time spent in the phase, in nanoseconds.
+         */
+        long getTimeNanos();
+
+        /**
+         * @return bytes allocated in the phase, or -1 if not recorded.  (see the analysisallocations option).
+         */
+        long getAllocatedBytes();
+    }
+
+    /**
+     * Extends {@link PhaseTiming} to describe the method it was recorded for.
+     */
+    interface MethodPhaseTiming extends PhaseTiming {
+        /**
+         * @return raw name of the class containing the method.
+         */
+        String getClassName();
+
+        String getMethodName();
+
+        String getMethodDescriptor();
+    }
+
     enum TokenTypeFlags {
         DEFINES
     }
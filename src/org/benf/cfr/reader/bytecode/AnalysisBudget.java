@@ -0,0 +1,70 @@
+package org.benf.cfr.reader.bytecode;
+
+import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+
+/*
+ * Limits how long we're prepared to spend on a single method (see OptionsImpl.METHOD_TIME_LIMIT,
+ * METHOD_STEP_LIMIT).
+ *
+ * Rewriters which can spin on pathological code call check() as they go - rather than pass this through
+ * every one of them, the budget for the method currently being analysed lives with the thread.  Analysing
+ * one method can require analysing another - that one gets its own budget, and the outer one resumes after.
+ */
+public class AnalysisBudget {
+    private static final ThreadLocal<AnalysisBudget> current = new ThreadLocal<AnalysisBudget>();
+
+    private final AnalysisBudget outer;
+    private final long deadline;
+    private final long maxSteps;
+    private long steps;
+    private boolean exhausted;
+
+    private AnalysisBudget(AnalysisBudget outer, long deadline, long maxSteps) {
+        this.outer = outer;
+        this.deadline = deadline;
+        this.maxSteps = maxSteps;
+    }
+
+    /*
+     * Returns null if there's no limit.  Otherwise, must be paired with exit.
+     */
+    static AnalysisBudget enter(Options options) {
+        int timeLimit = options.getOption(OptionsImpl.METHOD_TIME_LIMIT);
+        int stepLimit = options.getOption(OptionsImpl.METHOD_STEP_LIMIT);
+        if (timeLimit <= 0 && stepLimit <= 0) return null;
+        long deadline = timeLimit <= 0 ? Long.MAX_VALUE : System.nanoTime() + timeLimit * 1000000L;
+        long maxSteps = stepLimit <= 0 ? Long.MAX_VALUE : stepLimit;
+        AnalysisBudget budget = new AnalysisBudget(current.get(), deadline, maxSteps);
+        current.set(budget);
+        return budget;
+    }
+
+    void exit() {
+        current.set(outer);
+    }
+
+    boolean isExhausted() {
+        if (!exhausted && deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) exhausted = true;
+        return exhausted;
+    }
+
+    public static void check() {
+        AnalysisBudget budget = current.get();
+        if (budget != null) budget.step();
+    }
+
+    private void step() {
+        if (exhausted) {
+            throw new AnalysisBudgetExceededException("Analysis budget already exhausted");
+        }
+        if (++steps > maxSteps) {
+            exhausted = true;
+            throw new AnalysisBudgetExceededException("Exceeded " + maxSteps + " analysis steps");
+        }
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            exhausted = true;
+            throw new AnalysisBudgetExceededException("Exceeded analysis time limit after " + steps + " steps");
+        }
+    }
+}
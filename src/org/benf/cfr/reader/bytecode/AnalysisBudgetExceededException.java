@@ -0,0 +1,9 @@
+package org.benf.cfr.reader.bytecode;
+
+public class AnalysisBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public AnalysisBudgetExceededException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,72 @@
+package org.benf.cfr.reader.bytecode;
+
+import org.benf.cfr.reader.bytecode.analysis.types.JavaTypeInstance;
+import org.benf.cfr.reader.entities.ClassFile;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.ConfusedCFRException;
+import org.benf.cfr.reader.util.collections.SetFactory;
+
+import java.util.Set;
+
+/*
+ * A top level class, and the inner classes which are analysed along with it, (see ClassFile.getNest).
+ *
+ * Analysing a class changes its nest - synthetic constructor arguments are hidden, anonymous classes are told where
+ * they're used, enum switch lookup classes are hidden, and so on.  It mustn't change anything else: other classes it
+ * refers to are only read.  Parallel analysis (see OptionsImpl.ANALYSIS_THREADS) depends on this, as classes are
+ * only ordered against those which share their nest's members, or refer to them.
+ *
+ * So while a jar's class is being analysed, its nest lives with the thread.  When analysing in parallel, rewriters
+ * which go looking at another class's code leave it alone if it's outside the nest, and analysis of a method outside
+ * the nest is refused outright.
+ *
+ * Otherwise, (and outside of a nest, eg analysing a single class file), nothing is refused - analysis behaves
+ * exactly as it always has.
+ */
+public class AnalysisNest {
+    private static final ThreadLocal<AnalysisNest> current = new ThreadLocal<AnalysisNest>();
+
+    private final AnalysisNest outer;
+    private final Set<JavaTypeInstance> members;
+    private final boolean confined;
+
+    private AnalysisNest(AnalysisNest outer, Set<JavaTypeInstance> members, boolean confined) {
+        this.outer = outer;
+        this.members = members;
+        this.confined = confined;
+    }
+
+    /*
+     * Must be paired with exit.
+     *
+     * The members are about to be changed, so are marked as touched - they can't be dropped from a bounded class
+     * file cache from now on, (see BoundedClassFileMap).
+     *
+     * Only if confined is anything outside the nest refused.
+     */
+    public static AnalysisNest enter(DCCommonState dcCommonState, ClassFile classFile, boolean confined) {
+        Set<JavaTypeInstance> members = SetFactory.newSet();
+        for (ClassFile member : classFile.getNest(dcCommonState, null).values()) {
+            member.markTouched();
+            members.add(member.getClassType());
+        }
+        AnalysisNest nest = new AnalysisNest(current.get(), members, confined);
+        current.set(nest);
+        return nest;
+    }
+
+    public void exit() {
+        current.set(outer);
+    }
+
+    public static boolean contains(JavaTypeInstance type) {
+        AnalysisNest nest = current.get();
+        return nest == null || !nest.confined || nest.members.contains(type.getDeGenerifiedType());
+    }
+
+    static void check(ClassFile classFile) {
+        if (!contains(classFile.getClassType())) {
+            throw new ConfusedCFRException("Analysis reached " + classFile.getClassType().getRawName() + ", outside the class being analysed");
+        }
+    }
+}
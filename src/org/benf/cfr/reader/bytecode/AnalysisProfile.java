@@ -0,0 +1,309 @@
+package org.benf.cfr.reader.bytecode;
+
+import org.benf.cfr.reader.api.SinkReturns;
+import org.benf.cfr.reader.entities.Method;
+import org.benf.cfr.reader.state.DCCommonState;
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.MapFactory;
+import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/*
+ * Where the time goes when analysing methods - see OptionsImpl.ANALYSIS_TIMINGS.
+ *
+ * Each analysis pass of each method is timed by a PhaseTimer, which accumulates locally and is merged in here
+ * when the pass ends, so this is safe to share between analysis threads.
+ *
+ * Analysing one method can require analysing another (lambdas, inlined synthetics...).  While that happens,
+ * the outer method's timer is paused, so every nanosecond is attributed to exactly one method.
+ *
+ * Totals cover everything, but per method timings are only kept for the slowest passes (see
+ * OptionsImpl.ANALYSIS_TIMINGS_METHODS) - otherwise a big jar would keep a record for every phase of every method.
+ */
+public class AnalysisProfile {
+    private static final ThreadLocal<Recorder> current = new ThreadLocal<Recorder>();
+
+    private final AllocationCounter allocationCounter;
+    // Recovery pass -> phase -> { count, nanos, bytes }.
+    private final Map<Integer, Map<String, long[]>> totals = new TreeMap<Integer, Map<String, long[]>>();
+    // The slowest method passes seen, fastest at the head.
+    private final PriorityQueue<MethodPass> slowest = new PriorityQueue<MethodPass>(11, MethodPass.BY_TIME);
+    private final int maxMethodPasses;
+
+    private AnalysisProfile(AllocationCounter allocationCounter, int maxMethodPasses) {
+        this.allocationCounter = allocationCounter;
+        this.maxMethodPasses = maxMethodPasses;
+    }
+
+    /*
+     * Returns null if timings haven't been requested.
+     */
+    public static AnalysisProfile create(Options options) {
+        if (!options.getOption(OptionsImpl.ANALYSIS_TIMINGS)) return null;
+        AllocationCounter allocationCounter = options.getOption(OptionsImpl.ANALYSIS_ALLOCATIONS) ? AllocationCounter.create() : null;
+        return new AnalysisProfile(allocationCounter, options.getOption(OptionsImpl.ANALYSIS_TIMINGS_METHODS));
+    }
+
+    static PhaseTimer start(DCCommonState dcCommonState, Method method, int recoveryPass) {
+        AnalysisProfile profile = dcCommonState.getAnalysisProfile();
+        if (profile == null) return PhaseTimer.Nop.INSTANCE;
+        Recorder outer = current.get();
+        if (outer != null) outer.pause();
+        Recorder recorder = profile.new Recorder(outer, method, recoveryPass);
+        current.set(recorder);
+        return recorder;
+    }
+
+    public synchronized List<SinkReturns.PhaseTiming> getPhaseTimings() {
+        List<SinkReturns.PhaseTiming> res = ListFactory.newList();
+        for (Map.Entry<Integer, Map<String, long[]>> passEntry : totals.entrySet()) {
+            for (Map.Entry<String, long[]> entry : passEntry.getValue().entrySet()) {
+                long[] values = entry.getValue();
+                res.add(new Timing(entry.getKey(), passEntry.getKey(), values[0], values[1], getAllocated(values[2])));
+            }
+        }
+        return res;
+    }
+
+    /*
+     * Slowest method pass first.
+     */
+    public synchronized List<SinkReturns.MethodPhaseTiming> getMethodPhaseTimings() {
+        List<MethodPass> passes = ListFactory.newList(slowest);
+        Collections.sort(passes, Collections.reverseOrder(MethodPass.BY_TIME));
+        List<SinkReturns.MethodPhaseTiming> res = ListFactory.newList();
+        for (MethodPass pass : passes) {
+            res.addAll(pass.timings);
+        }
+        return res;
+    }
+
+    public boolean isRecordingAllocations() {
+        return allocationCounter != null;
+    }
+
+    private long getAllocated(long bytes) {
+        return allocationCounter == null ? -1 : bytes;
+    }
+
+    private synchronized void merge(Recorder recorder) {
+        Map<String, long[]> passTotals = totals.get(recorder.recoveryPass);
+        if (passTotals == null) {
+            passTotals = MapFactory.newOrderedMap();
+            totals.put(recorder.recoveryPass, passTotals);
+        }
+        long timeNanos = 0;
+        for (Map.Entry<String, long[]> entry : recorder.phases.entrySet()) {
+            String phase = entry.getKey();
+            long[] values = entry.getValue();
+            long[] total = passTotals.get(phase);
+            if (total == null) {
+                total = new long[3];
+                passTotals.put(phase, total);
+            }
+            for (int x = 0; x < 3; ++x) total[x] += values[x];
+            timeNanos += values[1];
+        }
+        if (maxMethodPasses <= 0) return;
+        if (slowest.size() >= maxMethodPasses) {
+            if (slowest.peek().timeNanos >= timeNanos) return;
+            slowest.poll();
+        }
+        List<SinkReturns.MethodPhaseTiming> timings = ListFactory.newList();
+        for (Map.Entry<String, long[]> entry : recorder.phases.entrySet()) {
+            long[] values = entry.getValue();
+            timings.add(new MethodTiming(recorder.className, recorder.methodName, recorder.methodDescriptor,
+                    entry.getKey(), recorder.recoveryPass, values[0], values[1], getAllocated(values[2])));
+        }
+        slowest.add(new MethodPass(timeNanos, timings));
+    }
+
+    /*
+     * The phase timings from one pass over one method.
+     */
+    private static class MethodPass {
+        private static final Comparator<MethodPass> BY_TIME = new Comparator<MethodPass>() {
+            @Override
+            public int compare(MethodPass a, MethodPass b) {
+                return a.timeNanos < b.timeNanos ? -1 : (a.timeNanos == b.timeNanos ? 0 : 1);
+            }
+        };
+
+        private final long timeNanos;
+        private final List<SinkReturns.MethodPhaseTiming> timings;
+
+        private MethodPass(long timeNanos, List<SinkReturns.MethodPhaseTiming> timings) {
+            this.timeNanos = timeNanos;
+            this.timings = timings;
+        }
+    }
+
+    private class Recorder implements PhaseTimer {
+        private final Recorder outer;
+        private final String className;
+        private final String methodName;
+        private final String methodDescriptor;
+        private final int recoveryPass;
+        private final Map<String, long[]> phases = MapFactory.newOrderedMap();
+
+        private long[] currentPhase;
+        private long phaseStart;
+        private long phaseStartBytes;
+
+        private Recorder(Recorder outer, Method method, int recoveryPass) {
+            this.outer = outer;
+            this.className = method.getClassFile().getClassType().getRawName();
+            this.methodName = method.getName();
+            this.methodDescriptor = method.getMethodPrototype().getOriginalDescriptor();
+            this.recoveryPass = recoveryPass;
+        }
+
+        @Override
+        public void enter(Stage stage, String pass) {
+            pause();
+            String phase = stage.getPhase(pass);
+            long[] values = phases.get(phase);
+            if (values == null) {
+                values = new long[3];
+                phases.put(phase, values);
+            }
+            values[0]++;
+            currentPhase = values;
+            resume();
+        }
+
+        private void pause() {
+            if (currentPhase == null) return;
+            currentPhase[1] += System.nanoTime() - phaseStart;
+            if (allocationCounter != null) currentPhase[2] += allocationCounter.get() - phaseStartBytes;
+        }
+
+        private void resume() {
+            if (allocationCounter != null) phaseStartBytes = allocationCounter.get();
+            phaseStart = System.nanoTime();
+        }
+
+        @Override
+        public void end() {
+            pause();
+            currentPhase = null;
+            current.set(outer);
+            if (outer != null) outer.resume();
+            merge(this);
+        }
+    }
+
+    /*
+     * com.sun.management.ThreadMXBean isn't available everywhere, so find it reflectively.
+     */
+    private static class AllocationCounter {
+        private final ThreadMXBean threadMXBean;
+        private final java.lang.reflect.Method getThreadAllocatedBytes;
+
+        private AllocationCounter(ThreadMXBean threadMXBean, java.lang.reflect.Method getThreadAllocatedBytes) {
+            this.threadMXBean = threadMXBean;
+            this.getThreadAllocatedBytes = getThreadAllocatedBytes;
+        }
+
+        static AllocationCounter create() {
+            try {
+                ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+                Class<?> extended = Class.forName("com.sun.management.ThreadMXBean");
+                if (!extended.isInstance(threadMXBean)) return null;
+                java.lang.reflect.Method method = extended.getMethod("getThreadAllocatedBytes", long.class);
+                AllocationCounter res = new AllocationCounter(threadMXBean, method);
+                // Make sure it actually works, rather than finding out half way through.
+                if (res.get() < 0) return null;
+                return res;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        long get() {
+            try {
+                return (Long) getThreadAllocatedBytes.invoke(threadMXBean, Thread.currentThread().getId());
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+    }
+
+    private static class Timing implements SinkReturns.PhaseTiming {
+        private final String phase;
+        private final int recoveryPass;
+        private final long invocationCount;
+        private final long timeNanos;
+        private final long allocatedBytes;
+
+        private Timing(String phase, int recoveryPass, long invocationCount, long timeNanos, long allocatedBytes) {
+            this.phase = phase;
+            this.recoveryPass = recoveryPass;
+            this.invocationCount = invocationCount;
+            this.timeNanos = timeNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public String getPhase() {
+            return phase;
+        }
+
+        @Override
+        public int getRecoveryPass() {
+            return recoveryPass;
+        }
+
+        @Override
+        public long getInvocationCount() {
+            return invocationCount;
+        }
+
+        @Override
+        public long getTimeNanos() {
+            return timeNanos;
+        }
+
+        @Override
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private static class MethodTiming extends Timing implements SinkReturns.MethodPhaseTiming {
+        private final String className;
+        private final String methodName;
+        private final String methodDescriptor;
+
+        private MethodTiming(String className, String methodName, String methodDescriptor, String phase, int recoveryPass, long invocationCount, long timeNanos, long allocatedBytes) {
+            super(phase, recoveryPass, invocationCount, timeNanos, allocatedBytes);
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public String getMethodName() {
+            return methodName;
+        }
+
+        @Override
+        public String getMethodDescriptor() {
+            return methodDescriptor;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.benf.cfr.reader.bytecode;
+
+import org.benf.cfr.reader.bytecode.analysis.opgraph.Op04StructuredStatement;
+import org.benf.cfr.reader.bytecode.analysis.structured.statement.StructuredFakeDecompBudgetFailure;
+import org.benf.cfr.reader.util.DecompilerComment;
+import org.benf.cfr.reader.util.DecompilerComments;
+
+import java.util.List;
+
+public class AnalysisResultFromBudget implements AnalysisResult {
+    private final Op04StructuredStatement code;
+    private final DecompilerComments comments;
+
+    public AnalysisResultFromBudget(AnalysisBudgetExceededException e, List<String> bytecode) {
+        this.code = new Op04StructuredStatement(new StructuredFakeDecompBudgetFailure(e.getMessage(), bytecode));
+        this.comments = new DecompilerComments();
+        comments.addComment(new DecompilerComment("Analysis abandoned - " + e.getMessage(), true));
+    }
+
+    @Override
+    public boolean isFailed() {
+        return true;
+    }
+
+    @Override
+    public boolean isThrown() {
+        return true;
+    }
+
+    @Override
+    public Op04StructuredStatement getCode() {
+        return code;
+    }
+
+    @Override
+    public DecompilerComments getComments() {
+        return comments;
+    }
+
+    @Override
+    public AnonymousClassUsage getAnonymousClassUsage() {
+        return new AnonymousClassUsage();
+    }
+}
@@ -166,9 +166,20 @@ public class CodeAnalyser {
         if (analysed != null) {
             return analysed;
         }
+        AnalysisNest.check(method.getClassFile());
         analysed = POISON;
+        method.getClassFile().markTouched();
 
         Options options = dcCommonState.getOptions();
+        AnalysisBudget budget = AnalysisBudget.enter(options);
+        try {
+            return doAnalysis(dcCommonState, options, budget);
+        } finally {
+            if (budget != null) budget.exit();
+        }
+    }
+
+    private Op04StructuredStatement doAnalysis(DCCommonState dcCommonState, Options options, AnalysisBudget budget) {
         List<Op01WithProcessedDataAndByteJumps> instrs = getInstrs();
 
         AnalysisResult res;
@@ -192,6 +203,8 @@ public class CodeAnalyser {
             if (res.isFailed() && options.getOption(OptionsImpl.RECOVER)) {
                 int passIdx = 1;
                 for (RecoveryOptions recoveryOptions : recoveryOptionsArr) {
+                    // Not worth trying any harder, we're out of time.
+                    if (budget != null && budget.isExhausted()) break;
                     RecoveryOptions.Applied applied = recoveryOptions.apply(dcCommonState, options, bytecodeMeta);
                     if (!applied.valid) continue;
                     AnalysisResult nextRes = getAnalysisOrWrapFail(passIdx++, instrs, dcCommonState, applied.options, applied.comments, bytecodeMeta);
@@ -259,21 +272,63 @@ public class CodeAnalyser {
     }
 
     private AnalysisResult getAnalysisOrWrapFail(int passIdx, List<Op01WithProcessedDataAndByteJumps> instrs, DCCommonState commonState, Options options, List<DecompilerComment> extraComments, BytecodeMeta bytecodeMeta) {
+        PhaseTimer timer = AnalysisProfile.start(commonState, method, passIdx);
         try {
-            AnalysisResult res = getAnalysisInner(instrs, commonState, options, bytecodeMeta, passIdx);
+            AnalysisResult res = getAnalysisInner(instrs, commonState, options, bytecodeMeta, passIdx, timer);
             if (extraComments != null) res.getComments().addComments(extraComments);
             return res;
+        } catch (AnalysisBudgetExceededException e) {
+            return new AnalysisResultFromBudget(e, getBytecodeListing(instrs));
         } catch (RuntimeException e) {
             return new AnalysisResultFromException(e);
+        } finally {
+            timer.end();
+        }
+    }
+
+    private static List<String> getBytecodeListing(List<Op01WithProcessedDataAndByteJumps> instrs) {
+        List<String> res = ListFactory.newList();
+        for (Op01WithProcessedDataAndByteJumps instr : instrs) {
+            int offset = instr.getOriginalRawOffset();
+            // Skip the sentinel.
+            if (offset < 0) continue;
+            StringBuilder sb = new StringBuilder();
+            sb.append(offset).append(": ").append(instr.getJVMInstr().getName());
+            int[] targets = instr.getRawTargetOffsets();
+            if (targets != null) {
+                int length = instr.getInstructionLength();
+                for (int target : targets) {
+                    if (target != length) sb.append(' ').append(offset + target);
+                }
+            } else {
+                byte[] data = instr.getData();
+                int x = 0;
+                if (data != null && instr.hasConstantPoolEntries()) {
+                    // ldc has a one byte index, everything else two.
+                    if (data.length == 1) {
+                        sb.append(" #").append(data[x++] & 0xff);
+                    } else {
+                        sb.append(" #").append(((data[x++] & 0xff) << 8) | (data[x++] & 0xff));
+                    }
+                }
+                if (data != null) {
+                    for (; x < data.length; ++x) sb.append(' ').append(data[x] & 0xff);
+                }
+            }
+            res.add(sb.toString());
         }
+        return res;
     }
 
     /*
      * Note that the options passed in here only apply to this function - don't pass around.
      *
      * passIdx is only useful for breakpointing.
+     *
+     * timer is told as we move between phases - if you add a rewrite here that's worth accounting for separately,
+     * give it a phase (enterOp03 etc), and make sure that whatever follows it enters a phase too.
      */
-    private AnalysisResult getAnalysisInner(List<Op01WithProcessedDataAndByteJumps> instrs, DCCommonState dcCommonState, Options options, BytecodeMeta bytecodeMeta, int passIdx) {
+    private AnalysisResult getAnalysisInner(List<Op01WithProcessedDataAndByteJumps> instrs, DCCommonState dcCommonState, Options options, BytecodeMeta bytecodeMeta, int passIdx, PhaseTimer timer) {
 
         boolean willSort = options.getOption(OptionsImpl.FORCE_TOPSORT) == Troolean.TRUE;
 
@@ -287,6 +342,7 @@ public class CodeAnalyser {
             comments.addComment("Opcode count of " + instrs.size() + " triggered aggressive code reduction.  Override with --" + OptionsImpl.AGGRESSIVE_SIZE_REDUCTION_THRESHOLD.getName() + ".");
         }
 
+        enterOp01(timer, "toOp02");
         SortedMap<Integer, Integer> lutByOffset = new TreeMap<Integer, Integer>();
         Map<Integer, Integer> lutByIdx = new HashMap<Integer, Integer>();
         int idx2 = 0;
@@ -342,6 +398,7 @@ public class CodeAnalyser {
         }
 
 
+        enterOp02(timer, "exceptions");
         BlockIdentifierFactory blockIdentifierFactory = new BlockIdentifierFactory();
 
         // These are 'processed' exceptions, which we can use to lay out code.
@@ -399,6 +456,7 @@ public class CodeAnalyser {
         }
 
 
+        enterOp02(timer, "stackInfo");
         // Populate stack info (each instruction gets references to stack objects
         // consumed / produced.
         // This is the point at which we combine temporaries from merging
@@ -422,6 +480,7 @@ public class CodeAnalyser {
         }
 
 
+        enterOp02(timer, "unlinkUnreachable");
         // DFS the instructions, unlink any which aren't reachable.
         // This is neccessary because some obfuscated code (and some unobfuscated clojure!!)
         // can generate bytecode with unreachable operations, which confuses later stages which
@@ -429,19 +488,24 @@ public class CodeAnalyser {
         Op02WithProcessedDataAndRefs.unlinkUnreachable(op2list);
 
 
+        enterOp02(timer, "storageLiveness");
         // Discover slot re-use, infer invisible constructor parameters, etc.
+        AnalysisBudget.check();
         Op02WithProcessedDataAndRefs.discoverStorageLiveness(method, comments, op2list, bytecodeMeta);
 
+        enterOp02(timer, "toOp03");
         // Create a non final version...
         final VariableFactory variableFactory = new VariableFactory(method, bytecodeMeta);
 
         TypeHintRecovery typeHintRecovery = options.optionIsSet(OptionsImpl.USE_RECOVERED_ITERATOR_TYPE_HINTS) ?
                 new TypeHintRecoveryImpl(bytecodeMeta) : TypeHintRecoveryNone.INSTANCE;
 
+        AnalysisBudget.check();
         List<Op03SimpleStatement> op03SimpleParseNodes = Op02WithProcessedDataAndRefs.convertToOp03List(op2list, method, variableFactory, blockIdentifierFactory, dcCommonState, comments, typeHintRecovery);
         // Renumber, just in case JSR stage (or something) has left bad labellings.
         op03SimpleParseNodes = Cleaner.sortAndRenumber(op03SimpleParseNodes);
 
+        enterOp03(timer, "typeRewrites");
         // Expand any 'multiple' statements (eg from dups)
         Misc.flattenCompoundStatements(op03SimpleParseNodes);
         // Before we get complicated, see if there are any values which have been left with null/void types, but have
@@ -462,14 +526,18 @@ public class CodeAnalyser {
 
         Op03Rewriters.nopIsolatedStackValues(op03SimpleParseNodes);
 
+        enterOp03(timer, "ssa");
         Op03SimpleStatement.assignSSAIdentifiers(method, op03SimpleParseNodes);
 
+        enterOp03(timer, "staticInstances");
         // Fix static instance usage.
         Op03Rewriters.condenseStaticInstances(op03SimpleParseNodes);
 
+        enterOp03(timer, "lvalueProp");
         // Condense pointless assignments
         LValueProp.condenseLValues(op03SimpleParseNodes);
 
+        enterOp03(timer, "deadConditionals");
         if (options.getOption(OptionsImpl.REMOVE_DEAD_CONDITIONALS) == Troolean.TRUE) {
             // This removes impossible conditionals, but could hide real code, so we want
             // to avoid doing this unless necessary.
@@ -477,6 +545,7 @@ public class CodeAnalyser {
         }
         op03SimpleParseNodes = Cleaner.sortAndRenumber(op03SimpleParseNodes);
 
+        enterOp03(timer, "switches");
         // Before we expand raw switches, try to spot a particularly nasty pattern that kotlin
         // generates for string switches.
         op03SimpleParseNodes = KotlinSwitchHandler.extractStringSwitches(op03SimpleParseNodes, bytecodeMeta);
@@ -484,6 +553,7 @@ public class CodeAnalyser {
         SwitchReplacer.replaceRawSwitches(method, op03SimpleParseNodes, blockIdentifierFactory, options);
         op03SimpleParseNodes = Cleaner.sortAndRenumber(op03SimpleParseNodes);
 
+        enterOp03(timer, "tryCatch");
         // Remove 2nd (+) jumps in pointless jump chains.
         Op03Rewriters.removePointlessJumps(op03SimpleParseNodes);
 
@@ -502,12 +572,15 @@ public class CodeAnalyser {
 
         AnonymousClassUsage anonymousClassUsage = new AnonymousClassUsage();
 
+        enterOp03(timer, "construction");
         // Rewrite new / constructor pairs.
         Op03Rewriters.condenseConstruction(dcCommonState, method, op03SimpleParseNodes, anonymousClassUsage);
         op03SimpleParseNodes = Cleaner.sortAndRenumber(op03SimpleParseNodes);
+        enterOp03(timer, "lvalueProp");
         LValueProp.condenseLValues(op03SimpleParseNodes);
         Op03Rewriters.condenseLValueChain1(op03SimpleParseNodes);
 
+        enterOp03(timer, "tryFinally");
         StaticInitReturnRewriter.rewrite(options, method, op03SimpleParseNodes);
 
         op03SimpleParseNodes = Op03Rewriters.removeRedundantTries(op03SimpleParseNodes);
@@ -524,6 +597,7 @@ public class CodeAnalyser {
         Op03Rewriters.extendTryBlocks(dcCommonState, op03SimpleParseNodes);
         Op03Rewriters.combineTryCatchEnds(op03SimpleParseNodes);
 
+        enterOp03(timer, "assignments");
         // Remove LValues which are on their own as expressionstatements.
         Op03Rewriters.removePointlessExpressionStatements(op03SimpleParseNodes);
         op03SimpleParseNodes = Cleaner.removeUnreachableCode(op03SimpleParseNodes, !willSort);
@@ -541,6 +615,7 @@ public class CodeAnalyser {
         // Condense again, now we've simplified constructors.
         // Inline assingments need to be dealt with HERE (!).
         Op03Rewriters.collapseAssignmentsIntoConditionals(op03SimpleParseNodes, options, classFileVersion);
+        enterOp03(timer, "lvalueProp");
         LValueProp.condenseLValues(op03SimpleParseNodes);
         op03SimpleParseNodes = Cleaner.sortAndRenumber(op03SimpleParseNodes);
 
@@ -548,6 +623,8 @@ public class CodeAnalyser {
             op03SimpleParseNodes = RemoveDeterministicJumps.apply(method, op03SimpleParseNodes);
         }
 
+        enterOp03(timer, "topSort");
+        AnalysisBudget.check();
         if (options.getOption(OptionsImpl.FORCE_TOPSORT) == Troolean.TRUE) {
             if (options.getOption(OptionsImpl.FORCE_RETURNING_IFS) == Troolean.TRUE) {
                 Op03Rewriters.replaceReturningIfs(op03SimpleParseNodes, true);
@@ -594,8 +671,10 @@ public class CodeAnalyser {
             RemoveDeterministicJumps.propagateToReturn(method, op03SimpleParseNodes);
         }
 
+        enterOp03(timer, "conditionals");
         boolean reloop;
         do {
+            AnalysisBudget.check();
             Op03Rewriters.rewriteNegativeJumps(op03SimpleParseNodes, true);
 
             Op03Rewriters.collapseAssignmentsIntoConditionals(op03SimpleParseNodes, options, classFileVersion);
@@ -614,6 +693,7 @@ public class CodeAnalyser {
 
         } while (reloop);
 
+        enterOp03(timer, "simplify");
         AnonymousArray.resugarAnonymousArrays(op03SimpleParseNodes);
 
         Op03Rewriters.simplifyConditionals(op03SimpleParseNodes, false, method);
@@ -642,6 +722,7 @@ public class CodeAnalyser {
             Op03Rewriters.eclipseLoopPass(op03SimpleParseNodes);
         }
 
+        enterOp03(timer, "loops");
         // Identify simple while loops.
         op03SimpleParseNodes = Cleaner.removeUnreachableCode(op03SimpleParseNodes, true);
         LoopIdentifier.identifyLoops1(method, op03SimpleParseNodes, blockIdentifierFactory);
@@ -660,6 +741,7 @@ public class CodeAnalyser {
         op03SimpleParseNodes = Cleaner.sortAndRenumber(op03SimpleParseNodes);
         op03SimpleParseNodes = Cleaner.removeUnreachableCode(op03SimpleParseNodes, true);
 
+        enterOp03(timer, "jumps");
         // Perform this before simple forward if detection, as it allows us to not have to consider
         // gotos which have been relabelled as continue/break.
         Op03Rewriters.rewriteBreakStatements(op03SimpleParseNodes);
@@ -683,6 +765,7 @@ public class CodeAnalyser {
         Op03Rewriters.extractAssertionJumps(op03SimpleParseNodes);
         op03SimpleParseNodes = Cleaner.removeUnreachableCode(op03SimpleParseNodes, true);
 
+        enterOp03(timer, "ifs");
         // Identify simple (nested) conditionals - note that this also generates ternary expressions,
         // if the conditional is simple enough.
         ConditionalRewriter.identifyNonjumpingConditionals(op03SimpleParseNodes, blockIdentifierFactory);
@@ -697,12 +780,14 @@ public class CodeAnalyser {
             Op03Rewriters.moveJumpsIntoDo(variableFactory, op03SimpleParseNodes, options, comments);
         }
 
+        enterOp03(timer, "lvalueProp");
         // Condense again, now we've simplified conditionals, ternaries, etc.
         LValueProp.condenseLValues(op03SimpleParseNodes);
         if (options.getOption(OptionsImpl.FORCE_COND_PROPAGATE) == Troolean.TRUE) {
             Op03Rewriters.propagateToReturn2(op03SimpleParseNodes);
         }
 
+        enterOp03(timer, "gotos");
         op03SimpleParseNodes = Op03Rewriters.removeUselessNops(op03SimpleParseNodes);
 
 
@@ -731,6 +816,7 @@ public class CodeAnalyser {
          */
         InlineDeAssigner.extractAssignments(op03SimpleParseNodes);
 
+        enterOp03(timer, "iterators");
         // Introduce java 6 style for (x : array)
         boolean checkLoopTypeClash = false;
         if (options.getOption(OptionsImpl.ARRAY_ITERATOR, classFileVersion)) {
@@ -743,17 +829,20 @@ public class CodeAnalyser {
             checkLoopTypeClash = true;
         }
 
+        enterOp03(timer, "synchronized");
         SynchronizedBlocks.findSynchronizedBlocks(op03SimpleParseNodes);
 
         Op03SimpleStatement.removePointlessSwitchDefaults(op03SimpleParseNodes);
 
         op03SimpleParseNodes = Op03Rewriters.removeUselessNops(op03SimpleParseNodes);
 
+        enterOp03(timer, "expressions");
         Op03Rewriters.rewriteWith(op03SimpleParseNodes, new StringBuilderRewriter(options, classFileVersion));
         Op03Rewriters.rewriteWith(op03SimpleParseNodes, new XorRewriter());
 
         op03SimpleParseNodes = Cleaner.removeUnreachableCode(op03SimpleParseNodes, true);
 
+        enterOp03(timer, "blocks");
         if (options.getOption(OptionsImpl.LABELLED_BLOCKS)) {
             // Before we handle anonymous blocks - see if we can convert any non-else if statements, which
             // Jump to a Goto Out of try, to just be an anonymous break to after that try statement.
@@ -765,6 +854,7 @@ public class CodeAnalyser {
         Op03Rewriters.removePointlessJumps(op03SimpleParseNodes);
 
 
+        enterOp03(timer, "types");
         /*
          * At this point, if we have any remaining stack variables, then we're either looking
          * at some form of obfuscation, or non java.  Either way, replace StackValues with locals
@@ -813,8 +903,11 @@ public class CodeAnalyser {
 
         Op03SimpleStatement.noteInterestingLifetimes(op03SimpleParseNodes);
 
+        enterOp04(timer, "createStructured");
+        AnalysisBudget.check();
         Op04StructuredStatement block = Op03SimpleStatement.createInitialStructuredBlock(op03SimpleParseNodes);
 
+        enterOp04(timer, "tidy");
         Op04StructuredStatement.tidyEmptyCatch(block);
         Op04StructuredStatement.tidyTryCatch(block);
         Op04StructuredStatement.convertUnstructuredIf(block);
@@ -832,6 +925,7 @@ public class CodeAnalyser {
         Op04StructuredStatement.removeUnnecessaryLabelledBreaks(block);
         Op04StructuredStatement.flattenNonReferencedBlocks(block);
 
+        AnalysisBudget.check();
         /*
          * If we can't fully structure the code, we bow out here.
          */
@@ -844,6 +938,7 @@ public class CodeAnalyser {
 
             // Replace with a more generic interface, etc.
 
+            enterOp04(timer, "switches");
             new SwitchStringRewriter(options, classFileVersion, bytecodeMeta).rewrite(block);
             new SwitchEnumRewriter(dcCommonState, classFile, blockIdentifierFactory).rewrite(block);
 
@@ -854,6 +949,7 @@ public class CodeAnalyser {
 
             Op04StructuredStatement.normalizeInstanceOf(block, options, classFileVersion);
 
+            enterOp04(timer, "variableScopes");
             // Now we've got everything nicely block structured, we can have an easier time
             // We *have* to discover variable scopes BEFORE we rewrite lambdas, because
             // otherwise we have to perform some seriously expensive scope rewriting to
@@ -875,12 +971,14 @@ public class CodeAnalyser {
                 Op04StructuredStatement.switchExpression(method, block, comments);
             }
 
+            enterOp04(timer, "lambdas");
             Op04StructuredStatement.rewriteLambdas(dcCommonState, method, block);
             // Now lambdas have been rewritten, reprocess ONLY to insert local class
             // definitions.
             // Note that local class definitions are removed at the point of lambda rewrite.
             Op04StructuredStatement.discoverLocalClassScopes(method, block, variableFactory, options);
                                             
+            enterOp04(timer, "boxing");
             if (options.getOption(OptionsImpl.REMOVE_BOILERPLATE)) {
                 // Note - we ALSO try to do this in whole pass analysis.
                 if (this.method.isConstructor()) {
@@ -898,11 +996,13 @@ public class CodeAnalyser {
             // Or narrowing casts which are no longer needed because boxed assignments allow them.
             Op04StructuredStatement.rewriteNarrowingAssignments(options, method, block);
 
+            enterOp04(timer, "variableNames");
             // Tidy variable names
             Op04StructuredStatement.tidyVariableNames(method, block, bytecodeMeta, comments, cp.getClassCache());
 
             Op04StructuredStatement.miscKeyholeTransforms(variableFactory, block);
 
+            enterOp04(timer, "checks");
             /*
              * Now finally run some extra checks to spot wierdness.
              */
@@ -920,6 +1020,7 @@ public class CodeAnalyser {
             Op04StructuredStatement.applyTypeAnnotations(originalCodeAttribute, block, lutByOffset, comments);
         }
 
+        enterOp04(timer, "typeClashes");
         // Only check for type clashes on first pass.
         if (passIdx == 0) {
             if (Op04StructuredStatement.checkTypeClashes(block, bytecodeMeta)) {
@@ -930,6 +1031,25 @@ public class CodeAnalyser {
         return new AnalysisResultSuccessful(comments, block, anonymousClassUsage);
     }
 
+    /*
+     * One per stage of getAnalysisInner, so each pass within a stage is accounted for separately.  (see PhaseTimer).
+     */
+    private static void enterOp01(PhaseTimer timer, String pass) {
+        timer.enter(PhaseTimer.Stage.OP01, pass);
+    }
+
+    private static void enterOp02(PhaseTimer timer, String pass) {
+        timer.enter(PhaseTimer.Stage.OP02, pass);
+    }
+
+    private static void enterOp03(PhaseTimer timer, String pass) {
+        timer.enter(PhaseTimer.Stage.OP03, pass);
+    }
+
+    private static void enterOp04(PhaseTimer timer, String pass) {
+        timer.enter(PhaseTimer.Stage.OP04, pass);
+    }
+
     private void generateUnverifiable(int x, List<Op01WithProcessedDataAndByteJumps> op1list, List<Op02WithProcessedDataAndRefs> op2list, Map<Integer, Integer> lutByIdx, SortedMap<Integer, Integer> lutByOffset, BytecodeLocFactory locFactory) {
         Op01WithProcessedDataAndByteJumps instr = op1list.get(x);
         int thisRaw = instr.getOriginalRawOffset();
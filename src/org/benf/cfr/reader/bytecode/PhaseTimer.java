@@ -0,0 +1,48 @@
+package org.benf.cfr.reader.bytecode;
+
+/*
+ * Attributes time spent analysing a method to named phases (see AnalysisProfile).
+ *
+ * Entering a phase ends the previous one - so every call site which wants to be accounted for separately
+ * needs to be followed by entering whatever comes next.
+ */
+public interface PhaseTimer {
+    enum Stage {
+        OP01("op01"),
+        OP02("op02"),
+        OP03("op03"),
+        OP04("op04");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        /*
+         * Name of a phase within this stage, eg op03.ssa.
+         */
+        public String getPhase(String pass) {
+            return name + "." + pass;
+        }
+    }
+
+    void enter(Stage stage, String pass);
+
+    void end();
+
+    class Nop implements PhaseTimer {
+        public static final PhaseTimer INSTANCE = new Nop();
+
+        private Nop() {
+        }
+
+        @Override
+        public void enter(Stage stage, String pass) {
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
@@ -51,6 +51,10 @@ public class Op01WithProcessedDataAndByteJumps {
         return data;
     }
 
+    public boolean hasConstantPoolEntries() {
+        return constantPoolEntries != null;
+    }
+
     public Op02WithProcessedDataAndRefs createOp2(ConstantPool cp, int index, BytecodeLocFactory locFactory, Method method) {
         return new Op02WithProcessedDataAndRefs(instruction, data, index, cp, constantPoolEntries, originalRawOffset, locFactory.at(originalRawOffset, method));
     }
@@ -32,9 +32,10 @@ import org.benf.cfr.reader.util.collections.Functional;
 import org.benf.cfr.reader.util.collections.ListFactory;
 import org.benf.cfr.reader.util.collections.MapFactory;
 import org.benf.cfr.reader.util.collections.SetFactory;
-import org.benf.cfr.reader.util.collections.UniqueSeenQueue;
 import org.benf.cfr.reader.util.functors.BinaryProcedure;
 import org.benf.cfr.reader.util.functors.Predicate;
+import org.benf.cfr.reader.util.functors.UnaryFunction;
+import org.benf.cfr.reader.util.graph.DataflowWorklist;
 import org.benf.cfr.reader.util.graph.GraphVisitor;
 import org.benf.cfr.reader.util.graph.GraphVisitorDFS;
 import org.benf.cfr.reader.util.output.Dumpable;
@@ -644,7 +645,13 @@ public class Op03SimpleStatement implements MutableGraph<Op03SimpleStatement>, D
                 return in.getTargets().isEmpty();
             }
         });
-        UniqueSeenQueue<Op03SimpleStatement> toProcess = new UniqueSeenQueue<Op03SimpleStatement>(endpoints);
+        // Reads only ever grow, so the fixpoint doesn't depend on order - work back from the end points.
+        DataflowWorklist<Op03SimpleStatement> toProcess = DataflowWorklist.fromExits(endpoints, new UnaryFunction<Op03SimpleStatement, List<Op03SimpleStatement>>() {
+            @Override
+            public List<Op03SimpleStatement> invoke(Op03SimpleStatement arg) {
+                return arg.getSources();
+            }
+        });
 
         while (!toProcess.isEmpty()) {
             Op03SimpleStatement node = toProcess.removeFirst();
@@ -702,7 +709,14 @@ public class Op03SimpleStatement implements MutableGraph<Op03SimpleStatement>, D
 
         Op03SimpleStatement entry = statements.get(0);
 
-        UniqueSeenQueue<Op03SimpleStatement> toProcess = new UniqueSeenQueue<Op03SimpleStatement>(statements);
+        // Merging is a join, so the fixpoint doesn't depend on order - take statements in reverse post order, and
+        // most are only visited once their sources are done.
+        DataflowWorklist<Op03SimpleStatement> toProcess = new DataflowWorklist<Op03SimpleStatement>(statements, new UnaryFunction<Op03SimpleStatement, List<Op03SimpleStatement>>() {
+            @Override
+            public List<Op03SimpleStatement> invoke(Op03SimpleStatement arg) {
+                return arg.getTargets();
+            }
+        });
         while (!toProcess.isEmpty()) {
             Op03SimpleStatement statement = toProcess.removeFirst();
             SSAIdentifiers<LValue> ssaIdentifiers = statement.ssaIdentifiers;
@@ -1,10 +1,15 @@
 package org.benf.cfr.reader.bytecode.analysis.opgraph.op3rewriters;
 
 import org.benf.cfr.reader.bytecode.analysis.opgraph.Op03SimpleStatement;
+import org.benf.cfr.reader.bytecode.analysis.parse.Statement;
+import org.benf.cfr.reader.bytecode.analysis.parse.StatementContainer;
 import org.benf.cfr.reader.bytecode.analysis.parse.rewriters.AccountingRewriter;
 import org.benf.cfr.reader.bytecode.analysis.parse.utils.LValueAssignmentAndAliasCondenser;
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.SetFactory;
 
 import java.util.List;
+import java.util.Set;
 
 /*
  * Transformations to do with copy propagation etc.
@@ -16,10 +21,16 @@ public class LValueProp {
          * [todo - fix accounting].
          * Unfortunately, the accounting for stack entries is a bit wrong.  This pass will make
          * sure it's correct. :P
+         *
+         * While we're at it, note which statements mention stack labels at all - in a large method, most won't, and
+         * the alias and condensing passes below can't change those.  (Other rewriters change statements between
+         * calls, so this is worked out afresh each time, rather than maintained.)
          */
         AccountingRewriter accountingRewriter = new AccountingRewriter();
+        List<Op03SimpleStatement> candidates = ListFactory.newList();
         for (Op03SimpleStatement statement : statements) {
             statement.rewrite(accountingRewriter);
+            if (accountingRewriter.takeMentions()) candidates.add(statement);
         }
         accountingRewriter.flush();
 
@@ -42,28 +53,49 @@ public class LValueProp {
             }
 
             LValueAssignmentAndAliasCondenser.MutationRewriterSecondPass secondPassRewriter = firstPassRewriter.getSecondPassRewriter();
+            Set<StatementContainer<Statement>> changed = null;
             if (secondPassRewriter != null) {
                 for (Op03SimpleStatement statement : statements) {
                     statement.condense(secondPassRewriter);
                 }
+                changed = secondPassRewriter.getChanged();
             }
 
             lValueAssigmentCollector = new LValueAssignmentAndAliasCondenser();
             for (Op03SimpleStatement statement : statements) {
                 statement.collect(lValueAssigmentCollector);
             }
+
+            /*
+             * Mutations may have been moved into (or out of) statements, so those need checking again - nothing else
+             * has changed.  Counts are still good, so this accounting isn't flushed.
+             */
+            if (changed != null && !changed.isEmpty()) {
+                accountingRewriter = new AccountingRewriter();
+                Set<Op03SimpleStatement> wasCandidate = SetFactory.newIdentitySet();
+                wasCandidate.addAll(candidates);
+                candidates.clear();
+                for (Op03SimpleStatement statement : statements) {
+                    if (changed.contains(statement)) {
+                        statement.rewrite(accountingRewriter);
+                        if (accountingRewriter.takeMentions()) candidates.add(statement);
+                    } else if (wasCandidate.contains(statement)) {
+                        candidates.add(statement);
+                    }
+                }
+            }
         }
 
         /*
          * Don't actually rewrite anything, but have an additional pass through to see if there are any aliases we can replace.
          */
         LValueAssignmentAndAliasCondenser.AliasRewriter multiRewriter = lValueAssigmentCollector.getAliasRewriter();
-        for (Op03SimpleStatement statement : statements) {
+        for (Op03SimpleStatement statement : candidates) {
             statement.condense(multiRewriter);
         }
         multiRewriter.inferAliases();
 
-        for (Op03SimpleStatement statement : statements) {
+        for (Op03SimpleStatement statement : candidates) {
             lValueAssigmentCollector.reset();
             statement.condense(lValueAssigmentCollector);
         }
@@ -1,5 +1,6 @@
 package org.benf.cfr.reader.bytecode.analysis.opgraph.op3rewriters;
 
+import org.benf.cfr.reader.bytecode.AnalysisBudget;
 import org.benf.cfr.reader.bytecode.analysis.loc.BytecodeLoc;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.InstrIndex;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.Op03SimpleStatement;
@@ -43,6 +44,7 @@ public class LoopIdentifier {
 
         List<Op03SimpleStatement> pathtests = Functional.filter(statements, new TypeFilter<GotoStatement>(GotoStatement.class));
         for (Op03SimpleStatement start : pathtests) {
+            AnalysisBudget.check();
             considerAsPathologicalLoop(start, statements);
         }
 
@@ -58,6 +60,7 @@ public class LoopIdentifier {
         List<LoopResult> loopResults = ListFactory.newList();
         Set<BlockIdentifier> relevantBlocks = SetFactory.newSet();
         for (Op03SimpleStatement start : starts) {
+            AnalysisBudget.check();
             BlockIdentifier blockIdentifier = considerAsWhileLoopStart(method, start, statements, blockIdentifierFactory, blockEndsCache);
             if (blockIdentifier == null) {
                 blockIdentifier = considerAsDoLoopStart(start, statements, blockIdentifierFactory, blockEndsCache);
@@ -96,6 +99,7 @@ public class LoopIdentifier {
         Map<BlockIdentifier, Op03SimpleStatement> lastForBlock = MapFactory.newMap();
 
         for (LoopResult loopResult : loopResults) {
+            AnalysisBudget.check();
             final Op03SimpleStatement start = loopResult.blockStart;
             final BlockIdentifier testBlockIdentifier = loopResult.blockIdentifier;
 
@@ -1,5 +1,6 @@
 package org.benf.cfr.reader.bytecode.analysis.opgraph.op3rewriters;
 
+import org.benf.cfr.reader.bytecode.AnalysisBudget;
 import org.benf.cfr.reader.bytecode.analysis.loc.BytecodeLoc;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.InstrIndex;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.Op03SimpleStatement;
@@ -62,6 +63,7 @@ public class SwitchReplacer {
         // Replace raw switch statements with switches and case statements inline.
         List<Op03SimpleStatement> switches = ListFactory.newList();
         for (Op03SimpleStatement switchStatement : switchStatements) {
+            AnalysisBudget.check();
             Op03SimpleStatement switchToProcess = replaceRawSwitch(method, switchStatement, in, blockIdentifierFactory, options);
             if (switchToProcess != null) switches.add(switchToProcess);
         }
@@ -88,6 +90,7 @@ public class SwitchReplacer {
 
         boolean pullCodeIntoCase = options.getOption(OptionsImpl.PULL_CODE_CASE);
         for (Op03SimpleStatement switchStatement : switches) {
+            AnalysisBudget.check();
             // (assign switch block).
             switchStatement = examineSwitchContiguity(switchStatement, in, pullCodeIntoCase);
             moveJumpsToCaseStatements(switchStatement);
@@ -357,6 +360,7 @@ public class SwitchReplacer {
          * Get the block identifiers for all switch statements and their cases.
          */
         for (Op03SimpleStatement switchStatement : switchStatements) {
+            AnalysisBudget.check();
             SwitchStatement switchStatementInr = (SwitchStatement) switchStatement.getStatement();
             BlockIdentifier switchBlock = switchStatementInr.getSwitchBlock();
 
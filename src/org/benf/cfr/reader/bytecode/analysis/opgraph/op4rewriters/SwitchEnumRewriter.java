@@ -1,5 +1,6 @@
 package org.benf.cfr.reader.bytecode.analysis.opgraph.op4rewriters;
 
+import org.benf.cfr.reader.bytecode.AnalysisNest;
 import org.benf.cfr.reader.bytecode.analysis.loc.BytecodeLoc;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.Op04StructuredStatement;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.op4rewriters.matchutil.*;
@@ -329,6 +330,8 @@ public class SwitchEnumRewriter implements Op04Rewriter {
             // Oh dear, can't load that class.  Proceed without it.
             return;
         }
+        // Javac puts the lookup table in one of our inner classes - if it's anywhere else, we can't touch it.
+        if (!AnalysisNest.contains(enumLutClass.getClassType())) return;
         Field lut;
         try {
             lut = enumLutClass.getFieldByName(varName, staticLookupTable.getInferredJavaType().getJavaTypeInstance()).getField();
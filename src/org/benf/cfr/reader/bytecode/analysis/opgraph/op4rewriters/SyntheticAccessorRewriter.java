@@ -1,5 +1,6 @@
 package org.benf.cfr.reader.bytecode.analysis.opgraph.op4rewriters;
 
+import org.benf.cfr.reader.bytecode.AnalysisNest;
 import org.benf.cfr.reader.bytecode.analysis.loc.BytecodeLoc;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.Op04StructuredStatement;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.op4rewriters.matchutil.AbstractMatchResultIterator;
@@ -136,6 +137,7 @@ public class SyntheticAccessorRewriter extends AbstractExpressionRewriter implem
 
         ClassFile otherClass = state.getClassFile(tgtType);
         JavaTypeInstance otherType = otherClass.getClassType();
+        if (!AnalysisNest.contains(otherType)) return null;
         MethodPrototype otherPrototype = functionInvokation.getFunction().getMethodPrototype();
         List<Expression> appliedArgs = functionInvokation.getArgs();
 
@@ -22,19 +22,39 @@ public class AccountingRewriter implements ExpressionRewriter {
                     return 0L;
                 }
             });
+    /*
+     * Set if anything since the last call to takeMentions could be changed by condensing - a stack label, or
+     * something a comparison would push itself into.
+     */
+    private boolean mentions;
 
     @Override
     public void handleStatement(StatementContainer statementContainer) {
 
     }
 
+    /*
+     * Why this is all LValueProp needs to know about a statement it might condense:
+     *
+     * The condensing rewriters (LValueAssignmentAndAliasCondenser and its AliasRewriter) only ever replace, note
+     * or blacklist StackSSALabels - getLValueReplacement and checkPostConditions return straight away for anything
+     * else.  So a statement with no label, as a use or an assignment target, comes out of replaceSingleUsageLValues
+     * exactly as it went in, with one exception - ComparisonOperation pushes itself down into a side which
+     * canPushDownInto, whether or not anything was replaced.  Every subexpression passes through here or the
+     * overloads below, so both are seen.
+     *
+     * Condensing statement S only changes S, and the statement defining what it took, (which is nopped) - and the
+     * definition assigns to the label S mentioned, so was a candidate too.
+     */
     @Override
     public Expression rewriteExpression(Expression expression, SSAIdentifiers ssaIdentifiers, StatementContainer statementContainer, ExpressionRewriterFlags flags) {
+        if (expression.canPushDownInto()) mentions = true;
         return expression.applyExpressionRewriter(this, ssaIdentifiers, statementContainer, flags);
     }
 
     @Override
     public ConditionalExpression rewriteExpression(ConditionalExpression expression, SSAIdentifiers ssaIdentifiers, StatementContainer statementContainer, ExpressionRewriterFlags flags) {
+        if (expression.canPushDownInto()) mentions = true;
         Expression res = expression.applyExpressionRewriter(this, ssaIdentifiers, statementContainer, flags);
         return (ConditionalExpression) res;
     }
@@ -55,6 +75,7 @@ public class AccountingRewriter implements ExpressionRewriter {
 
     @Override
     public StackSSALabel rewriteExpression(StackSSALabel lValue, SSAIdentifiers ssaIdentifiers, StatementContainer statementContainer, ExpressionRewriterFlags flags) {
+        mentions = true;
         if (flags != ExpressionRewriterFlags.LVALUE) {
 //            System.out.println("Use of [" + lValue + "] in " + statementContainer);
             count.put(lValue, count.get(lValue) + 1);
@@ -62,6 +83,12 @@ public class AccountingRewriter implements ExpressionRewriter {
         return lValue;
     }
 
+    public boolean takeMentions() {
+        boolean res = mentions;
+        mentions = false;
+        return res;
+    }
+
     public void flush() {
         for (Map.Entry<StackSSALabel, Long> entry : count.entrySet()) {
 //            System.out.println("Usage count of " + entry.getKey() + " = " + entry.getValue());
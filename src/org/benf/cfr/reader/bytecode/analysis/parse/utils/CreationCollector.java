@@ -1,5 +1,6 @@
 package org.benf.cfr.reader.bytecode.analysis.parse.utils;
 
+import org.benf.cfr.reader.bytecode.AnalysisNest;
 import org.benf.cfr.reader.bytecode.AnonymousClassUsage;
 import org.benf.cfr.reader.bytecode.analysis.loc.BytecodeLoc;
 import org.benf.cfr.reader.bytecode.analysis.opgraph.InstrIndex;
@@ -138,7 +139,8 @@ public class CreationCollector {
             AbstractConstructorInvokation constructorInvokation = null;
             InnerClassInfo innerClassInfo = lValueType.getInnerClassHereInfo();
 
-            if (innerClassInfo.isAnonymousClass()) {
+            // An anonymous class is told where it's used, so it has to be one of ours.
+            if (innerClassInfo.isAnonymousClass() && AnalysisNest.contains(lValueType)) {
                 /* anonymous inner class - so we need to match the arguments we're deliberately passing
                  * (i.e. the ones which are being passed into the constructor for the base of the anonymous
                  * class), vs ones which are being bound without being passed in.
@@ -203,7 +205,7 @@ public class CreationCollector {
 
                 constructorInvokation = cis;
 
-                if (innerClassInfo.isMethodScopedClass()) {
+                if (innerClassInfo.isMethodScopedClass() && AnalysisNest.contains(lValueType)) {
                     // TODO:  Feels like the concept of anonymousClassUsage and methodScopedClass
                     // can be run together in the method, NOT in the class.
                     method.markUsedLocalClassType(lValueType);
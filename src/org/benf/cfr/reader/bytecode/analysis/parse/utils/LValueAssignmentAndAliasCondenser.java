@@ -614,15 +614,23 @@ public class LValueAssignmentAndAliasCondenser implements LValueRewriter<Stateme
     public class MutationRewriterSecondPass implements LValueRewriter<Statement> {
         private final Set<SSAIdent> fixed;
         private final Map<VersionedLValue, StatementContainer> mutableReplacable;
+        // Both where a mutation's been moved to, and where it's been moved from.
+        private final Set<StatementContainer<Statement>> changed;
 
         private MutationRewriterSecondPass(Map<VersionedLValue, StatementContainer> mutableReplacable) {
             this.mutableReplacable = mutableReplacable;
             this.fixed = emptyFixed;
+            this.changed = SetFactory.newIdentitySet();
         }
 
-        private MutationRewriterSecondPass(Map<VersionedLValue, StatementContainer> mutableReplacable, Set<SSAIdent> fixed) {
+        private MutationRewriterSecondPass(Map<VersionedLValue, StatementContainer> mutableReplacable, Set<SSAIdent> fixed, Set<StatementContainer<Statement>> changed) {
             this.mutableReplacable = mutableReplacable;
             this.fixed = fixed;
+            this.changed = changed;
+        }
+
+        public Set<StatementContainer<Statement>> getChanged() {
+            return changed;
         }
 
         @Override
@@ -662,6 +670,8 @@ public class LValueAssignmentAndAliasCondenser implements LValueRewriter<Stateme
                     // Only the first time.
                     mutableReplacable.remove(versionedLValue);
                     replacement.nopOut();
+                    changed.add(replacement);
+                    changed.add(statementContainer);
                     currentIdents.setKnownIdentifierOnEntry(lValue, previousIdents.getSSAIdentOnEntry(lValue));
                     currentIdents.fixHere(previousIdents.getFixedHere());
                     return replaceWith.expression;
@@ -672,7 +682,7 @@ public class LValueAssignmentAndAliasCondenser implements LValueRewriter<Stateme
 
         @Override
         public LValueRewriter getWithFixed(Set<SSAIdent> fixed) {
-            return new MutationRewriterSecondPass(this.mutableReplacable, SetFactory.newSet(this.fixed, fixed));
+            return new MutationRewriterSecondPass(this.mutableReplacable, SetFactory.newSet(this.fixed, fixed), changed);
         }
 
         @Override
@@ -1,48 +1,95 @@
 package org.benf.cfr.reader.bytecode.analysis.parse.utils;
 
-import java.util.BitSet;
-
+/*
+ * A set of versions of something - almost always just one, so that's held inline.  Only merges need more, which
+ * are held as a sorted array.
+ *
+ * Immutable, so merging with something we already cover returns this, rather than a copy.
+ *
+ * Equality (and hash, and toString) are as they were when this was a BitSet - the iteration order of maps keyed
+ * on these can leak into output.
+ */
 public class SSAIdent {
     public static SSAIdent poison = new SSAIdent(0, new Object());
 
-    private final BitSet val;
+    // If vals is null, the only member.
+    private final int single;
+    // Sorted, distinct, with at least 2 members - or null.
+    private final int[] vals;
     private final Object comparisonType;
+    private final int hash;
 
     public SSAIdent(int idx, Object comparisonType) {
-        val = new BitSet();
-        val.set(idx);
+        this.single = idx;
+        this.vals = null;
         this.comparisonType = comparisonType;
+        this.hash = computeHash();
     }
 
-    private SSAIdent(BitSet content, Object comparisonType) {
-        this.val = content;
+    private SSAIdent(int[] vals, Object comparisonType) {
+        this.single = vals[0];
+        this.vals = vals;
         this.comparisonType = comparisonType;
+        this.hash = computeHash();
     }
 
     public Object getComparisonType() {
         return comparisonType;
     }
 
+    private int get(int idx) {
+        return vals == null ? single : vals[idx];
+    }
+
     public SSAIdent mergeWith(SSAIdent other) {
-        BitSet b1 = val;
-        BitSet b2 = other.val;
-        if (b1.equals(b2)) return this;
-        b1 = (BitSet) b1.clone();
-        b1.or(b2);
-        return new SSAIdent(b1, comparisonType);
+        if (contains(other)) return this;
+        int thisCard = card();
+        int otherCard = other.card();
+        int[] merged = new int[thisCard + otherCard];
+        int x = 0;
+        int y = 0;
+        int count = 0;
+        while (x < thisCard || y < otherCard) {
+            if (y == otherCard || (x < thisCard && get(x) < other.get(y))) {
+                merged[count++] = get(x++);
+            } else if (x == thisCard || other.get(y) < get(x)) {
+                merged[count++] = other.get(y++);
+            } else {
+                merged[count++] = get(x++);
+                y++;
+            }
+        }
+        if (count != merged.length) {
+            int[] trimmed = new int[count];
+            System.arraycopy(merged, 0, trimmed, 0, count);
+            merged = trimmed;
+        }
+        return new SSAIdent(merged, comparisonType);
     }
 
+    /*
+     * Strictly - we have everything other has, and more.
+     */
     public boolean isSuperSet(SSAIdent other) {
-        BitSet tmp = (BitSet) val.clone();
-        tmp.or(other.val);
-        // if or-ing it changed cardinality, then it wasn't a superset.
-        if (tmp.cardinality() != val.cardinality()) return false;
-        tmp.xor(other.val);
-        return (tmp.cardinality() > 0);
+        return card() > other.card() && contains(other);
+    }
+
+    private boolean contains(SSAIdent other) {
+        int thisCard = card();
+        int otherCard = other.card();
+        if (otherCard > thisCard) return false;
+        int x = 0;
+        for (int y = 0; y < otherCard; ++y) {
+            int want = other.get(y);
+            while (x < thisCard && get(x) < want) x++;
+            if (x == thisCard || get(x) != want) return false;
+            x++;
+        }
+        return true;
     }
 
     public int card() {
-        return val.cardinality();
+        return vals == null ? 1 : vals.length;
     }
 
     @Override
@@ -50,23 +97,52 @@ public class SSAIdent {
         if (o == this) return true;
         if (!(o instanceof SSAIdent)) return false;
         SSAIdent other = (SSAIdent) o;
-        return val.equals(other.val);
+        if (hash != other.hash) return false;
+        int card = card();
+        if (card != other.card()) return false;
+        for (int x = 0; x < card; ++x) {
+            if (get(x) != other.get(x)) return false;
+        }
+        return true;
+    }
+
+    /*
+     * As BitSet.hashCode.
+     */
+    private int computeHash() {
+        long h = 1234;
+        int card = card();
+        int x = 0;
+        while (x < card) {
+            int wordIdx = get(x) >>> 6;
+            long word = 0;
+            while (x < card && (get(x) >>> 6) == wordIdx) {
+                word |= 1L << get(x);
+                x++;
+            }
+            h ^= word * (wordIdx + 1);
+        }
+        return (int) ((h >> 32) ^ h);
     }
 
     @Override
     public int hashCode() {
-        return val.hashCode();
+        return hash;
     }
 
     @Override
     public String toString() {
         if (this == poison) return "POISON";
-        return val.toString();
+        StringBuilder sb = new StringBuilder("{");
+        int card = card();
+        for (int x = 0; x < card; ++x) {
+            if (x > 0) sb.append(", ");
+            sb.append(get(x));
+        }
+        return sb.append("}").toString();
     }
 
     public boolean isFirstIn(SSAIdent other) {
-        int bit1 = val.nextSetBit(0);
-        int bit2 = other.val.nextSetBit(0);
-        return bit1 == bit2;
+        return get(0) == other.get(0);
     }
 }
@@ -50,12 +50,12 @@ public class SSAIdentifiers<KEYTYPE> {
     }
 
     private boolean registerChange(Map<KEYTYPE, SSAIdent> knownIdentifiers, KEYTYPE lValue, SSAIdent otherIdent) {
-        if (!knownIdentifiers.containsKey(lValue)) {
+        SSAIdent oldIdent = knownIdentifiers.get(lValue);
+        if (oldIdent == null && !knownIdentifiers.containsKey(lValue)) {
             knownIdentifiers.put(lValue, otherIdent);
             return true;
         } else {
             // Merge
-            SSAIdent oldIdent = knownIdentifiers.get(lValue);
             Object k1 = oldIdent.getComparisonType();
             Object k2 = otherIdent.getComparisonType();
             SSAIdent newIdent;
@@ -11,10 +11,12 @@ import org.benf.cfr.reader.util.collections.SetFactory;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class StackEntry {
 
-    private static long sid = 0;
+    // Classes may be analysed concurrently.
+    private static final AtomicLong sid = new AtomicLong();
 
     private final long id0;
     private final Set<Long> ids = SetFactory.newSet();
@@ -25,7 +27,7 @@ public class StackEntry {
     private final InferredJavaType inferredJavaType = new InferredJavaType();
 
     StackEntry(StackType stackType) {
-        id0 = sid++;
+        id0 = sid.getAndIncrement();
         ids.add(id0);
         this.lValue = new StackSSALabel(id0, this);
         this.stackType = stackType;
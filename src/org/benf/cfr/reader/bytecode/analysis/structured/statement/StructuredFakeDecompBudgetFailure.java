@@ -0,0 +1,39 @@
+package org.benf.cfr.reader.bytecode.analysis.structured.statement;
+
+import org.benf.cfr.reader.util.output.Dumper;
+
+import java.util.List;
+
+/*
+ * Stands in for a method which we gave up on (see AnalysisBudget) - unlike a real failure, a stack trace
+ * won't help anyone, so show the bytecode instead.
+ */
+public class StructuredFakeDecompBudgetFailure extends StructuredComment {
+    private final String reason;
+    private final List<String> bytecode;
+
+    public StructuredFakeDecompBudgetFailure(String reason, List<String> bytecode) {
+        super("");
+        this.reason = reason;
+        this.bytecode = bytecode;
+    }
+
+    @Override
+    public Dumper dump(Dumper dumper) {
+        dumper.separator("{");
+        dumper.indent(1);
+        dumper.newln();
+        dumper.beginBlockComment(false);
+        dumper.print("Analysis of this method was abandoned - " + reason + ".").newln().newln();
+        for (String line : bytecode) {
+            dumper.explicitIndent().print(line).newln();
+        }
+        dumper.endBlockComment();
+        dumper.keyword("throw new ").print("IllegalStateException").separator("(").literal("\"Decompilation failed\"", "\"Decompilation failed\"").separator(")").endCodeln();
+        dumper.indent(-1);
+        dumper.separator("}");
+        dumper.enqueuePendingCarriageReturn();
+
+        return dumper;
+    }
+}
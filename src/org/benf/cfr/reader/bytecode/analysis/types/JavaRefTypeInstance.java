@@ -29,7 +29,8 @@ public class JavaRefTypeInstance implements JavaTypeInstance {
     private InnerClassInfo innerClassInfo; // info about this class AS AN INNER CLASS.
     //    private final Options options;
     private final DCCommonState dcCommonState; // Shouldn't need this here...
-    private BindingSuperContainer cachedBindingSupers = BindingSuperContainer.POISON;
+    // Types are shared between analysis threads.
+    private volatile BindingSuperContainer cachedBindingSupers = BindingSuperContainer.POISON;
 
     private JavaRefTypeInstance(final String className, DCCommonState dcCommonState) {
         this.innerClassInfo = InnerClassInfo.NOT;
@@ -371,14 +372,17 @@ public class JavaRefTypeInstance implements JavaTypeInstance {
 
     @Override
     public BindingSuperContainer getBindingSupers() {
-        if (cachedBindingSupers != BindingSuperContainer.POISON) return cachedBindingSupers;
+        BindingSuperContainer res = cachedBindingSupers;
+        if (res != BindingSuperContainer.POISON) return res;
         try {
             ClassFile classFile = getClassFile();
-            cachedBindingSupers = classFile == null ? null : classFile.getBindingSupers();
+            res = classFile == null ? null : classFile.getBindingSupers();
         } catch (CannotLoadClassException e) {
-            cachedBindingSupers = null;
+            res = null;
         }
-        return cachedBindingSupers;
+        // Racing threads will have found the same thing, (the class file hands out a single container).
+        cachedBindingSupers = res;
+        return res;
     }
 
     @Override
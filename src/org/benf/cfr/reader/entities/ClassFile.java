@@ -9,6 +9,7 @@ import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.bytecode.analysis.parse.utils.Triplet;
 import org.benf.cfr.reader.bytecode.analysis.types.BindingSuperContainer;
 import org.benf.cfr.reader.bytecode.analysis.types.BoundSuperCollector;
+import org.benf.cfr.reader.bytecode.analysis.types.ClassNameUtils;
 import org.benf.cfr.reader.bytecode.analysis.types.ClassSignature;
 import org.benf.cfr.reader.bytecode.analysis.types.FormalTypeParameter;
 import org.benf.cfr.reader.bytecode.analysis.types.GenericTypeBinder;
@@ -61,6 +62,7 @@ import org.benf.cfr.reader.util.ClassFileVersion;
 import org.benf.cfr.reader.util.ConfusedCFRException;
 import org.benf.cfr.reader.util.DecompilerComment;
 import org.benf.cfr.reader.util.DecompilerComments;
+import org.benf.cfr.reader.util.KnowsRawSize;
 import org.benf.cfr.reader.util.MiscConstants;
 import org.benf.cfr.reader.util.StringUtils;
 import org.benf.cfr.reader.util.TypeUsageCollectable;
@@ -79,13 +81,14 @@ import org.benf.cfr.reader.util.output.Dumper;
 import org.benf.cfr.reader.util.output.IllegalIdentifierReplacement;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class ClassFile implements Dumpable, TypeUsageCollectable {
+public class ClassFile implements Dumpable, TypeUsageCollectable, KnowsRawSize {
     // Constants
     private static final long OFFSET_OF_MAGIC = 0;
     private static final long OFFSET_OF_MINOR = 4;
@@ -98,11 +101,13 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
     private final ConstantPool constantPool;
     private final Set<AccessFlag> accessFlags;
     private final List<ClassFileField> fields;
-    private Map<String, Map<JavaTypeInstance, ClassFileField>> fieldsByName; // Lazily populated if interrogated.
+    // Lazily populated if interrogated - and only published once complete, as library classes are shared between
+    // analysis threads.
+    private volatile Map<String, Map<JavaTypeInstance, ClassFileField>> fieldsByName;
 
     private final List<Method> methods;
     private FakeMethods fakeMethods;
-    private Map<String, List<Method>> methodsByName; // Lazily populated if interrogated.
+    private volatile Map<String, List<Method>> methodsByName; // Lazily populated if interrogated, as above.
     private final boolean isInnerClass;
     private final Map<JavaTypeInstance, Pair<InnerClassAttributeInfo, ClassFile>> innerClassesByTypeInfo; // populated if analysed.
 
@@ -126,12 +131,21 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
      */
     private boolean hiddenInnerClass;
 
-    private BindingSuperContainer boundSuperClasses;
+    private volatile BindingSuperContainer boundSuperClasses;
+
+    /*
+     * Set once anything might change this, so that it's no longer just what we'd get by reloading it, (see
+     * BoundedClassFileMap).  Rather than every change marking it, that's when analysis starts on its nest (see
+     * AnalysisNest), on the class itself, or when members are renamed up front.
+     */
+    private volatile boolean touched;
 
     private ClassFileDumper dumpHelper;
 
     private final String usePath;
 
+    private final long rawByteLength;
+
     /*
      * Be sure to call loadInnerClasses directly after.
      */
@@ -223,9 +237,10 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         final int numAttributes = data.getU2At(OFFSET_OF_ATTRIBUTES_COUNT);
         ArrayList<Attribute> tmpAttributes = new ArrayList<Attribute>();
         tmpAttributes.ensureCapacity(numAttributes);
-        ContiguousEntityFactory.build(data.getOffsetData(OFFSET_OF_ATTRIBUTES), numAttributes, tmpAttributes,
+        final long attributesLength = ContiguousEntityFactory.build(data.getOffsetData(OFFSET_OF_ATTRIBUTES), numAttributes, tmpAttributes,
                 AttributeFactory.getBuilder(constantPool, classFileVersion)
         );
+        this.rawByteLength = OFFSET_OF_ATTRIBUTES + attributesLength;
 
         this.attributes = new AttributeMap(tmpAttributes);
         AccessFlag.applyAttributes(attributes, accessFlags);
@@ -405,16 +420,32 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         return usePath;
     }
 
+    /*
+     * Size of the class file this was read from.
+     */
+    @Override
+    public long getRawByteLength() {
+        return rawByteLength;
+    }
+
     public boolean isInterface() {
         return accessFlags.contains(AccessFlag.ACC_INTERFACE);
     }
 
-    public void addComment(DecompilerComment comment) {
+    public void markTouched() {
+        touched = true;
+    }
+
+    public boolean isTouched() {
+        return touched;
+    }
+
+    public synchronized void addComment(DecompilerComment comment) {
         if (decompilerComments == null) decompilerComments = new DecompilerComments();
         decompilerComments.addComment(comment);
     }
 
-    public void addComment(String comment) {
+    public synchronized void addComment(String comment) {
         ensureDecompilerComments();
         decompilerComments.addComment(comment);
     }
@@ -427,7 +458,7 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         return decompilerComments;
     }
 
-    public DecompilerComments ensureDecompilerComments() {
+    public synchronized DecompilerComments ensureDecompilerComments() {
         if (decompilerComments == null) decompilerComments = new DecompilerComments();
         return decompilerComments;
     }
@@ -497,6 +528,21 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         return constantPool;
     }
 
+    /*
+     * Class files this class refers to, supertypes first.  Only a hint for prefetching - it's not an error if
+     * some can't be found.
+     */
+    public Collection<String> getReferencedClassFilePaths() {
+        Set<String> res = SetFactory.newOrderedSet();
+        if (rawSuperClass != null) res.add(rawSuperClass.getFilePath());
+        for (ConstantPoolEntryClass rawInterface : rawInterfaces) {
+            res.add(rawInterface.getFilePath());
+        }
+        constantPool.collectClassFilePaths(res);
+        res.remove(thisClass.getFilePath());
+        return res;
+    }
+
     public boolean testAccessFlag(AccessFlag accessFlag) {
         return accessFlags.contains(accessFlag);
     }
@@ -541,9 +587,7 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
     }
 
     public ClassFileField getFieldByName(String name, JavaTypeInstance type) throws NoSuchFieldException {
-        if (fieldsByName == null) {
-            calculateFieldsByName();
-        }
+        ensureFieldsByName();
         Map<JavaTypeInstance, ClassFileField> fieldsByType = fieldsByName.get(name);
         if (fieldsByType == null || fieldsByType.isEmpty()) { // can't be empty, but....
             throw new NoSuchFieldException(name);
@@ -556,11 +600,16 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         return field;
     }
 
-    private void calculateFieldsByName() {
+    /*
+     * Synchronised, rather than just published when done, as this marks fields and adds comments - which must
+     * only happen once.
+     */
+    private synchronized void calculateFieldsByName() {
+        if (fieldsByName != null) return;
         Options options = constantPool.getDCCommonState().getOptions();
         boolean testIllegal = !options.getOption(OptionsImpl.RENAME_ILLEGAL_IDENTS);
         boolean illegal = false;
-        fieldsByName = MapFactory.newMap();
+        Map<String, Map<JavaTypeInstance, ClassFileField>> byName = MapFactory.newMap();
         if (testIllegal) {
             for (ClassFileField field : fields) {
                 String rawFieldName = field.getRawFieldName();
@@ -576,10 +625,10 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         for (ClassFileField field : fields) {
             String fieldName = field.getFieldName();
             JavaTypeInstance fieldType = field.getField().getJavaTypeInstance();
-            Map<JavaTypeInstance, ClassFileField> perNameMap = fieldsByName.get(fieldName);
+            Map<JavaTypeInstance, ClassFileField> perNameMap = byName.get(fieldName);
             if (perNameMap == null) {
                 perNameMap = MapFactory.newOrderedMap();
-                fieldsByName.put(fieldName, perNameMap);
+                byName.put(fieldName, perNameMap);
             }
             perNameMap.put(fieldType, field);
             if (renameSmallMembers && fieldName.length() <= smallMemberThreshold) {
@@ -587,7 +636,7 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
             }
         }
         boolean warnAmbig = false;
-        for (Map<JavaTypeInstance, ClassFileField> typeMap : fieldsByName.values()) {
+        for (Map<JavaTypeInstance, ClassFileField> typeMap : byName.values()) {
             if (typeMap.size() > 1) {
                 if (constantPool.getDCCommonState().getOptions().getOption(OptionsImpl.RENAME_DUP_MEMBERS)) {
                     for (ClassFileField field : typeMap.values()) {
@@ -604,6 +653,7 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         if (illegal) {
             addComment(DecompilerComment.ILLEGAL_IDENTIFIERS);
         }
+        this.fieldsByName = byName;
     }
 
     public List<ClassFileField> getFields() {
@@ -753,7 +803,9 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
     }
 
     public List<Method> getMethodsByNameOrNull(String name) {
+        Map<String, List<Method>> methodsByName = this.methodsByName;
         if (methodsByName == null) {
+            // If we race another thread here, we'll both build the same thing.
             methodsByName = MapFactory.newMap();
             for (Method method : methods) {
                 List<Method> list = methodsByName.get(method.getName());
@@ -763,6 +815,7 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
                 }
                 list.add(method);
             }
+            this.methodsByName = methodsByName;
         }
         return methodsByName.get(name);
     }
@@ -893,6 +946,42 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
         }
     }
 
+    /*
+     * This class, and the inner classes (transitively) which are analysed along with it, by path - see AnalysisNest.
+     * Inner classes are found by name, as scala abuses '$', and by InnerClasses attribute, as obfuscators don't
+     * keep names.  If references isn't null, it's given every class any of them refers to.
+     */
+    public Map<String, ClassFile> getNest(DCCommonState dcCommonState, Set<String> references) {
+        Map<String, ClassFile> members = MapFactory.newOrderedMap();
+        collectNest(dcCommonState, ClassNameUtils.convertToPath(getClassType().getRawName()) + MiscConstants.INNER_CLASS_SEP_STR, members, references);
+        return members;
+    }
+
+    private void collectNest(DCCommonState dcCommonState, String innerPrefix, Map<String, ClassFile> members, Set<String> references) {
+        JavaTypeInstance thisType = getClassType();
+        members.put(ClassNameUtils.convertToPath(thisType.getRawName()) + ".class", this);
+        Set<String> inner = SetFactory.newOrderedSet();
+        for (String reference : getReferencedClassFilePaths()) {
+            if (references != null) references.add(reference);
+            if (reference.startsWith(innerPrefix)) inner.add(reference);
+        }
+        List<InnerClassAttributeInfo> innerClassAttributeInfoList = getInnerClassAttributeInfos(dcCommonState);
+        if (innerClassAttributeInfoList != null) {
+            for (InnerClassAttributeInfo innerClassAttributeInfo : innerClassAttributeInfoList) {
+                JavaTypeInstance innerType = innerClassAttributeInfo.getInnerClassInfo();
+                if (innerType == null || !innerType.getInnerClassHereInfo().isInnerClassOf(thisType)) continue;
+                inner.add(ClassNameUtils.convertToPath(innerType.getRawName()) + ".class");
+            }
+        }
+        for (String path : inner) {
+            if (members.containsKey(path)) continue;
+            try {
+                dcCommonState.getClassFile(path).collectNest(dcCommonState, innerPrefix, members, references);
+            } catch (CannotLoadClassException ignore) {
+            }
+        }
+    }
+
     private List<InnerClassAttributeInfo> getInnerClassAttributeInfos(DCCommonState state) {
         AttributeInnerClasses attributeInnerClasses = attributes.getByName(AttributeInnerClasses.ATTRIBUTE_NAME);
         List<InnerClassAttributeInfo> innerClassAttributeInfoList = attributeInnerClasses == null ? null : attributeInnerClasses.getInnerClassAttributeInfoList();
@@ -1014,6 +1103,7 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
             return;
         }
         this.begunAnalysis = true;
+        markTouched();
         /*
          * Analyse inner classes first, so we know if they're static when we reference them
          * from the outer class.
@@ -1253,10 +1343,16 @@ public class ClassFile implements Dumpable, TypeUsageCollectable {
     public BindingSuperContainer getBindingSupers() {
         // Start with the generic version of this type, i.e. if this is Fred<X>
 
-        if (boundSuperClasses == null) {
-            boundSuperClasses = generateBoundSuperClasses();
+        BindingSuperContainer res = boundSuperClasses;
+        if (res != null) return res;
+        // Generated outside the lock, as it needs the supers - but everyone gets the first one.
+        res = generateBoundSuperClasses();
+        synchronized (this) {
+            if (boundSuperClasses == null) {
+                boundSuperClasses = res;
+            }
+            return boundSuperClasses;
         }
-        return boundSuperClasses;
     }
 
     private BindingSuperContainer generateBoundSuperClasses() {
@@ -6,18 +6,23 @@ import org.benf.cfr.reader.state.DCCommonState;
 import org.benf.cfr.reader.util.ConfusedCFRException;
 import org.benf.cfr.reader.util.bytestream.ByteData;
 import org.benf.cfr.reader.util.bytestream.OffsettingByteData;
-import org.benf.cfr.reader.util.collections.ListFactory;
 import org.benf.cfr.reader.util.getopt.Options;
 import org.benf.cfr.reader.util.output.LoggerFactory;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 
 public class ConstantPool {
     private static final Logger logger = LoggerFactory.create(ConstantPool.class);
 
     private final long length;
-    private final List<ConstantPoolEntry> entries;
+    private final ByteData raw;
+    // Offset (into raw) of each entry, or -1 for the unusable slot following a long or double.
+    private final int[] offsets;
+    // Decoded on first access - most of the pool of a class we only load to resolve types is never looked at.
+    // Library pools are shared between analysis threads, so entries are published through this.
+    private final AtomicReferenceArray<ConstantPoolEntry> entries;
     private final Options options;
     private final DCCommonState dcCommonState;
     private final ClassCache classCache;
@@ -34,7 +39,9 @@ public class ConstantPool {
         count--;
 
         RawTmp tmp = processRaw(raw, count);
-        this.entries = tmp.entries;
+        this.raw = raw;
+        this.offsets = tmp.offsets;
+        this.entries = new AtomicReferenceArray<ConstantPoolEntry>(tmp.offsets.length);
         this.length = tmp.rawLength;
         this.dynamicConstants = tmp.dynamicConstants;
         this.dcCommonState = dcCommonState;
@@ -55,95 +62,113 @@ public class ConstantPool {
     }
 
     private static class RawTmp {
-        final List<ConstantPoolEntry> entries;
+        final int[] offsets;
         final long rawLength;
         final boolean dynamicConstants;
 
-        RawTmp(List<ConstantPoolEntry> entries, long rawLength, boolean dynamicConstants) {
-            this.entries = entries;
+        RawTmp(int[] offsets, long rawLength, boolean dynamicConstants) {
+            this.offsets = offsets;
             this.rawLength = rawLength;
             this.dynamicConstants = dynamicConstants;
         }
     }
 
+    /*
+     * We only index the pool here - entries are decoded by decodeEntry as required.
+     */
     private RawTmp processRaw(ByteData raw, int count) {
-        List<ConstantPoolEntry> tgt = ListFactory.newList(count);
+        int[] offsets = new int[Math.max(count, 0)];
         OffsettingByteData data = raw.getOffsettingOffsetData(0);
         boolean dynamicConstant = false;
         logger.info("Processing " + count + " constpool entries.");
         for (int x = 0; x < count; ++x) {
             ConstantPoolEntry.Type type = ConstantPoolEntry.Type.get(data.getS1At(0));
-            ConstantPoolEntry cpe;
+            offsets[x] = (int) data.getOffset();
+            long size;
             switch (type) {
-                case CPT_NameAndType:
-                    cpe = new ConstantPoolEntryNameAndType(this, data);
-                    break;
+                case CPT_Class:
                 case CPT_String:
-                    cpe = new ConstantPoolEntryString(this, data);
+                case CPT_MethodType:
+                case CPT_ModuleInfo:
+                case CPT_PackageInfo:
+                    size = 3;
                     break;
-                case CPT_FieldRef:
-                    cpe = new ConstantPoolEntryFieldRef(this, data);
+                case CPT_MethodHandle:
+                    size = 4;
                     break;
+                case CPT_NameAndType:
+                case CPT_FieldRef:
                 case CPT_MethodRef:
-                    cpe = new ConstantPoolEntryMethodRef(this, data, false);
-                    break;
                 case CPT_InterfaceMethodRef:
-                    cpe = new ConstantPoolEntryMethodRef(this, data, true);
-                    break;
-                case CPT_Class:
-                    cpe = new ConstantPoolEntryClass(this, data);
-                    break;
-                case CPT_Double:
-                    cpe = new ConstantPoolEntryDouble(this, data);
-                    break;
                 case CPT_Float:
-                    cpe = new ConstantPoolEntryFloat(this, data);
-                    break;
-                case CPT_Long:
-                    cpe = new ConstantPoolEntryLong(this, data);
-                    break;
                 case CPT_Integer:
-                    cpe = new ConstantPoolEntryInteger(this, data);
-                    break;
-                case CPT_UTF8:
-                    cpe = new ConstantPoolEntryUTF8(this, data, options);
-                    break;
-                case CPT_MethodHandle:
-                    cpe = new ConstantPoolEntryMethodHandle(this, data);
-                    break;
-                case CPT_MethodType:
-                    cpe = new ConstantPoolEntryMethodType(this, data);
+                case CPT_InvokeDynamic:
+                    size = 5;
                     break;
                 case CPT_DynamicInfo:
-                    cpe = new ConstantPoolEntryDynamicInfo(this, data);
+                    size = 5;
                     dynamicConstant = true;
                     break;
-                case CPT_InvokeDynamic:
-                    cpe = new ConstantPoolEntryInvokeDynamic(this, data);
-                    break;
-                case CPT_ModuleInfo:
-                    cpe = new ConstantPoolEntryModuleInfo(this, data);
+                case CPT_Double:
+                case CPT_Long:
+                    size = 9;
+                    // The following slot is unusable.
+                    if (x + 1 < count) offsets[++x] = -1;
                     break;
-                case CPT_PackageInfo:
-                    cpe = new ConstantPoolEntryPackageInfo(this, data);
+                case CPT_UTF8:
+                    size = 3 + data.getU2At(1);
                     break;
                 default:
                     throw new ConfusedCFRException("Invalid constant pool entry : " + type);
             }
-            logger.info("" + (x + 1) + " : " + cpe);
-            tgt.add(cpe);
-            switch (type) {
-                case CPT_Double:
-                case CPT_Long:
-                    tgt.add(null);
-                    x++;
-                    break;
-            }
-
-            long size = cpe.getRawByteLength();
             data.advance(size);
         }
-        return new RawTmp(tgt, data.getOffset(), dynamicConstant);
+        return new RawTmp(offsets, data.getOffset(), dynamicConstant);
+    }
+
+    private ConstantPoolEntry decodeEntry(int x) {
+        int offset = offsets[x];
+        if (offset < 0) return null;
+        ByteData data = raw.getOffsetData(offset);
+        ConstantPoolEntry.Type type = ConstantPoolEntry.Type.get(data.getS1At(0));
+        switch (type) {
+            case CPT_NameAndType:
+                return new ConstantPoolEntryNameAndType(this, data);
+            case CPT_String:
+                return new ConstantPoolEntryString(this, data);
+            case CPT_FieldRef:
+                return new ConstantPoolEntryFieldRef(this, data);
+            case CPT_MethodRef:
+                return new ConstantPoolEntryMethodRef(this, data, false);
+            case CPT_InterfaceMethodRef:
+                return new ConstantPoolEntryMethodRef(this, data, true);
+            case CPT_Class:
+                return new ConstantPoolEntryClass(this, data);
+            case CPT_Double:
+                return new ConstantPoolEntryDouble(this, data);
+            case CPT_Float:
+                return new ConstantPoolEntryFloat(this, data);
+            case CPT_Long:
+                return new ConstantPoolEntryLong(this, data);
+            case CPT_Integer:
+                return new ConstantPoolEntryInteger(this, data);
+            case CPT_UTF8:
+                return new ConstantPoolEntryUTF8(this, data, options);
+            case CPT_MethodHandle:
+                return new ConstantPoolEntryMethodHandle(this, data);
+            case CPT_MethodType:
+                return new ConstantPoolEntryMethodType(this, data);
+            case CPT_DynamicInfo:
+                return new ConstantPoolEntryDynamicInfo(this, data);
+            case CPT_InvokeDynamic:
+                return new ConstantPoolEntryInvokeDynamic(this, data);
+            case CPT_ModuleInfo:
+                return new ConstantPoolEntryModuleInfo(this, data);
+            case CPT_PackageInfo:
+                return new ConstantPoolEntryPackageInfo(this, data);
+            default:
+                throw new ConfusedCFRException("Invalid constant pool entry : " + type);
+        }
     }
 
     public long getRawByteLength() {
@@ -153,9 +178,14 @@ public class ConstantPool {
     public ConstantPoolEntry getEntry(int index) {
         if (index == 0) throw new ConfusedCFRException("Attempt to fetch element 0 from constant pool");
         // NB: Constant pool entries are 1 based.
-        if (index > entries.size()) {
-            throw new IndexOutOfBoundsException("Constant pool has " + entries.size() + " entries - attempted to access entry #" + (index-1));
+        if (index > entries.length()) {
+            throw new IndexOutOfBoundsException("Constant pool has " + entries.length() + " entries - attempted to access entry #" + (index-1));
         }
+        ConstantPoolEntry res = entries.get(index - 1);
+        if (res != null) return res;
+        // Only one decoded entry is ever handed out, as their identity may matter to callers.
+        res = decodeEntry(index - 1);
+        if (entries.compareAndSet(index - 1, null, res)) return res;
         return entries.get(index - 1);
     }
 
@@ -185,6 +215,25 @@ public class ConstantPool {
         return (ConstantPoolEntryClass) getEntry(index);
     }
 
+    /*
+     * The classes this pool refers to, as class file paths - arrays are reduced to their element class, and
+     * primitive arrays skipped.  Only class entries (and their names) are decoded.
+     */
+    public void collectClassFilePaths(Collection<String> tgt) {
+        for (int x = 0; x < offsets.length; ++x) {
+            int offset = offsets[x];
+            if (offset < 0) continue;
+            if (ConstantPoolEntry.Type.get(raw.getS1At(offset)) != ConstantPoolEntry.Type.CPT_Class) continue;
+            String name = getUTF8Entry(getClassEntry(x + 1).nameIndex).getValue();
+            if (name.startsWith("[")) {
+                int start = name.lastIndexOf('[') + 1;
+                if (start >= name.length() || name.charAt(start) != 'L' || !name.endsWith(";")) continue;
+                name = name.substring(start + 1, name.length() - 1);
+            }
+            tgt.add(name + ".class");
+        }
+    }
+
     public ConstantPoolEntryModuleInfo getModuleEntry(int index) {
         return (ConstantPoolEntryModuleInfo) getEntry(index);
     }
@@ -205,7 +254,8 @@ public class ConstantPool {
 
         ConstantPool that = (ConstantPool) o;
 
-        if (!comparisonKey.equals(that.comparisonKey)) return false;
+        // that's key may not have been needed yet - eg if its class has just been reloaded.
+        if (!comparisonKey.equals(that.getComparisonKey())) return false;
 
         return true;
     }
@@ -13,7 +13,7 @@ public class ConstantPoolEntryClass extends AbstractConstantPoolEntry implements
     private static final long OFFSET_OF_NAME_INDEX = 1;
 
     final int nameIndex;
-    transient JavaTypeInstance javaTypeInstance = null;
+    transient volatile JavaTypeInstance javaTypeInstance = null;
 
     public ConstantPoolEntryClass(ConstantPool cp, ByteData data) {
         super(cp);
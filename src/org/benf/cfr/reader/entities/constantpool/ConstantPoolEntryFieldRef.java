@@ -12,7 +12,7 @@ public class ConstantPoolEntryFieldRef extends AbstractConstantPoolEntry {
 
     final int classIndex;
     final int nameAndTypeIndex;
-    JavaTypeInstance cachedDecodedType;
+    volatile JavaTypeInstance cachedDecodedType;
 
     public ConstantPoolEntryFieldRef(ConstantPool cp, ByteData data) {
         super(cp);
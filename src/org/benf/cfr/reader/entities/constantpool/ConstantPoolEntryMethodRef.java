@@ -21,7 +21,7 @@ public class ConstantPoolEntryMethodRef extends AbstractConstantPoolEntry {
     @SuppressWarnings({"FieldCanBeLocal", "unused"})
     private final boolean interfaceMethod;
     private static final VariableNamer fakeNamer = new VariableNamerDefault();
-    private MethodPrototype methodPrototype = null;
+    private volatile MethodPrototype methodPrototype = null;
 
     private final int classIndex;
     private final int nameAndTypeIndex;
@@ -6,13 +6,15 @@ import org.benf.cfr.reader.entities.AbstractConstantPoolEntry;
 import org.benf.cfr.reader.util.bytestream.ByteData;
 import org.benf.cfr.reader.util.output.Dumper;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public class ConstantPoolEntryNameAndType extends AbstractConstantPoolEntry {
     private static final long OFFSET_OF_NAME_INDEX = 1;
     private static final long OFFSET_OF_DESCRIPTOR_INDEX = 3;
 
     private final int nameIndex;
     private final int descriptorIndex;
-    private StackDelta[] stackDelta = new StackDelta[2];
+    private final AtomicReferenceArray<StackDelta> stackDelta = new AtomicReferenceArray<StackDelta>(2);
 
     public ConstantPoolEntryNameAndType(ConstantPool cp, ByteData data) {
         super(cp);
@@ -50,8 +52,11 @@ public class ConstantPoolEntryNameAndType extends AbstractConstantPoolEntry {
     public StackDelta getStackDelta(boolean member) {
         int idx = member ? 1 : 0;
         ConstantPool cp = getCp();
-        if (stackDelta[idx] == null)
-            stackDelta[idx] = ConstantPoolUtils.parseMethodPrototype(member, cp.getUTF8Entry(descriptorIndex), cp);
-        return stackDelta[idx];
+        StackDelta res = stackDelta.get(idx);
+        if (res == null) {
+            res = ConstantPoolUtils.parseMethodPrototype(member, cp.getUTF8Entry(descriptorIndex), cp);
+            stackDelta.set(idx, res);
+        }
+        return res;
     }
 }
@@ -10,7 +10,7 @@ public class ConstantPoolEntryString extends AbstractConstantPoolEntry implement
     private static final long OFFSET_OF_STRING_INDEX = 1;
 
     private final long stringIndex;
-    private transient String string;
+    private transient volatile String string;
 
     public ConstantPoolEntryString(ConstantPool cp, ByteData data) {
         super(cp);
@@ -150,6 +150,8 @@ public class MemberNameResolver {
                             if (resolvedName == null) {
                                 resolvedName = ClassNameUtils.getTypeFixPrefix(clashByType.getKey()) + methodPrototype.getName();
                             }
+                            // Renamed ahead of analysis, so mustn't be reloaded.
+                            method.getClassFile().markTouched();
                             methodPrototype.setFixedName(resolvedName);
                         }
                     }
@@ -0,0 +1,107 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.entities.ClassFile;
+import org.benf.cfr.reader.util.MiscConstants;
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Backing map for DCCommonState's class file cache, when it's been limited (see OptionsImpl.CLASS_CACHE_LIMIT).
+ *
+ * Least recently used first, we discard classes until the total size of their class files is back under the limit.
+ * Anything discarded is simply reloaded if it's asked for again - so only classes which nothing could have changed
+ * since they were loaded can go, (see ClassFile.isTouched), or a reload would lose renames, hidden members etc.
+ * Analysis only changes the nest it's working on, (see AnalysisNest), and touches all of it on the way in - so
+ * that leaves mostly library classes which were looked at for their hierarchy.  Types (and the summaries they hold,
+ * such as binding supers) are retained by the class cache.
+ *
+ * A class which is about to be analysed isn't touched yet, so it and its inner classes are also pinned by path
+ * until they've been dumped.  (Scala abuses '$', so we may pin more than we need to.)
+ *
+ * Overload information is cached against the class file itself, so that's dropped along with it.
+ *
+ * This is a soft limit - if everything is pinned or touched, we'll exceed it.
+ *
+ * Not thread safe - accessed under the cache's lock.
+ */
+class BoundedClassFileMap extends LinkedHashMap<String, ClassFile> {
+    private static final long serialVersionUID = 1L;
+
+    private final long maxBytes;
+    private final OverloadMethodSetCache overloadMethodSetCache;
+    // Path of a pinned class, without the .class suffix.
+    private final Map<String, Integer> pinned = MapFactory.newMap();
+    private long bytes;
+
+    BoundedClassFileMap(long maxBytes, OverloadMethodSetCache overloadMethodSetCache) {
+        super(16, 0.75f, true);
+        this.maxBytes = maxBytes;
+        this.overloadMethodSetCache = overloadMethodSetCache;
+    }
+
+    void pin(String basePath) {
+        Integer count = pinned.get(basePath);
+        pinned.put(basePath, count == null ? 1 : count + 1);
+    }
+
+    void unpin(String basePath) {
+        Integer count = pinned.get(basePath);
+        if (count == null) return;
+        if (count == 1) {
+            pinned.remove(basePath);
+        } else {
+            pinned.put(basePath, count - 1);
+        }
+    }
+
+    private boolean isPinned(String path) {
+        for (String basePath : pinned.keySet()) {
+            if (!path.startsWith(basePath)) continue;
+            String rest = path.substring(basePath.length());
+            if (rest.equals(".class") || rest.startsWith(MiscConstants.INNER_CLASS_SEP_STR)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public ClassFile put(String key, ClassFile value) {
+        ClassFile old = super.put(key, value);
+        if (old != null) bytes -= old.getRawByteLength();
+        bytes += value.getRawByteLength();
+        evict(key);
+        return old;
+    }
+
+    @Override
+    public ClassFile remove(Object key) {
+        ClassFile old = super.remove(key);
+        if (old != null) bytes -= old.getRawByteLength();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        bytes = 0;
+    }
+
+    /*
+     * Never the class that's just been loaded - it's about to be used.
+     */
+    private void evict(String justLoaded) {
+        if (bytes <= maxBytes) return;
+        Iterator<Map.Entry<String, ClassFile>> iterator = entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, ClassFile> entry = iterator.next();
+            String path = entry.getKey();
+            ClassFile classFile = entry.getValue();
+            if (path.equals(justLoaded) || classFile.isTouched() || isPinned(path)) continue;
+            bytes -= classFile.getRawByteLength();
+            iterator.remove();
+            overloadMethodSetCache.remove(classFile);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.bytecode.analysis.types.ClassNameUtils;
 import org.benf.cfr.reader.bytecode.analysis.types.JavaRefTypeInstance;
 import org.benf.cfr.reader.bytecode.analysis.types.TypeConstants;
+import org.benf.cfr.reader.util.collections.ListFactory;
 import org.benf.cfr.reader.util.collections.MapFactory;
 import org.benf.cfr.reader.util.collections.SetFactory;
 
@@ -11,6 +12,9 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
+/*
+ * Shared between all classes being analysed, which may be happening concurrently - so access is synchronised.
+ */
 public class ClassCache {
 
     private final Map<String, JavaRefTypeInstance> refClassTypeCache = MapFactory.newMap();
@@ -30,7 +34,7 @@ public class ClassCache {
         add(TypeConstants.ENUM.getRawName(), TypeConstants.ENUM);
     }
 
-    public JavaRefTypeInstance getRefClassFor(String rawClassName) {
+    public synchronized JavaRefTypeInstance getRefClassFor(String rawClassName) {
         /*
          * If the path (or pseudopath) has been renamed because it's a collision,
          * we need to replace with the deduplicated version - otherwise the file
@@ -63,11 +67,11 @@ public class ClassCache {
         }
     }
 
-    public boolean isClassName(String name) {
+    public synchronized boolean isClassName(String name) {
         return simpleClassNamesSeen.contains(name);
     }
 
-    public Pair<JavaRefTypeInstance, JavaRefTypeInstance> getRefClassForInnerOuterPair(String rawInnerName, String rawOuterName) {
+    public synchronized Pair<JavaRefTypeInstance, JavaRefTypeInstance> getRefClassForInnerOuterPair(String rawInnerName, String rawOuterName) {
         String innerName = ClassNameUtils.convertFromPath(rawInnerName);
         String outerName = ClassNameUtils.convertFromPath(rawOuterName);
         JavaRefTypeInstance inner = refClassTypeCache.get(innerName);
@@ -86,11 +90,11 @@ public class ClassCache {
 
     }
 
-    public Collection<JavaRefTypeInstance> getLoadedTypes() {
-        return refClassTypeCache.values();
+    public synchronized Collection<JavaRefTypeInstance> getLoadedTypes() {
+        return ListFactory.newList(refClassTypeCache.values());
     }
 
-    String getOriginalName(String typeName) {
+    synchronized String getOriginalName(String typeName) {
         return renamedClasses.get(typeName);
     }
 }
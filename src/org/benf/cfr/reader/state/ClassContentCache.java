@@ -0,0 +1,60 @@
+package org.benf.cfr.reader.state;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/*
+ * Raw content of library classes (ones found on the class path, or in the runtime image, rather than in the jar
+ * being analysed), retained across analyses.
+ *
+ * A ClassFile itself can't be shared between analyses - its constant pool and types belong to a DCCommonState
+ * which is deliberately discarded between inputs.  But finding, reading and inflating the bytes is the
+ * expensive part of loading java.lang.Object for the hundredth time, and that doesn't depend on the analysis.
+ *
+ * Bounded by total content size, least recently used first out.
+ */
+class ClassContentCache {
+    private final long maxBytes;
+    private long currentBytes;
+    private final LinkedHashMap<String, ByteBuffer> content = new LinkedHashMap<String, ByteBuffer>(256, 0.75f, true);
+
+    ClassContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+     * Returns a view of the cached content, so callers can't disturb each other's position.
+     */
+    synchronized ByteBuffer get(String path) {
+        ByteBuffer res = content.get(path);
+        return res == null ? null : res.duplicate();
+    }
+
+    synchronized void put(String path, ByteBuffer buffer) {
+        int size = buffer.remaining();
+        if (size > maxBytes) return;
+        ByteBuffer old = content.put(path, buffer.duplicate());
+        if (old != null) currentBytes -= old.remaining();
+        currentBytes += size;
+        Iterator<ByteBuffer> iterator = content.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().remaining();
+            iterator.remove();
+        }
+    }
+
+    synchronized void remove(String path) {
+        ByteBuffer old = content.remove(path);
+        if (old != null) currentBytes -= old.remaining();
+    }
+
+    synchronized void clear() {
+        content.clear();
+        currentBytes = 0;
+    }
+
+    synchronized long getSize() {
+        return currentBytes;
+    }
+}
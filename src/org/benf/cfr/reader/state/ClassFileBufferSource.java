@@ -0,0 +1,15 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+ * Optionally implemented by class file sources which can provide content without copying it into a fresh array.
+ *
+ * The returned buffer must not be modified, and must remain valid for as long as the class file is in use.
+ */
+interface ClassFileBufferSource {
+    Pair<ByteBuffer, String> getClassFileBuffer(String path) throws IOException;
+}
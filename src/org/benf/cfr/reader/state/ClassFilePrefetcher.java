@@ -0,0 +1,13 @@
+package org.benf.cfr.reader.state;
+
+import java.util.Collection;
+
+/*
+ * Optionally implemented by class file sources which would like to know what's likely to be asked for next.
+ */
+interface ClassFilePrefetcher {
+    /*
+     * Called once a class has been loaded, with the class files it refers to.  This must not block.
+     */
+    void prefetch(Collection<String> paths);
+}
@@ -35,6 +35,29 @@ public interface ClassFileRelocator {
             usePath = pathPrefix + usePath;
             return usePath;
         }
+
+        /*
+         * Classes in the same directory tree relocate the same way - see ClassFileSourcePrefetching.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            PrefixRelocator that = (PrefixRelocator) o;
+
+            if (!pathPrefix.equals(that.pathPrefix)) return false;
+            if (classRemovePrefix == null ? that.classRemovePrefix != null : !classRemovePrefix.equals(that.classRemovePrefix)) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = pathPrefix.hashCode();
+            result = 31 * result + (classRemovePrefix == null ? 0 : classRemovePrefix.hashCode());
+            return result;
+        }
     }
 
     class RenamingRelocator implements ClassFileRelocator {
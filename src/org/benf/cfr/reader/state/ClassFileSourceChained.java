@@ -6,9 +6,10 @@ import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.util.AnalysisType;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 
-public class ClassFileSourceChained implements ClassFileSource2 {
+public class ClassFileSourceChained implements ClassFileSource2, ClassFileBufferSource {
     private final Collection<ClassFileSource2> sources;
 
     public ClassFileSourceChained(Collection<ClassFileSource2> sources) {
@@ -65,4 +66,21 @@ public class ClassFileSourceChained implements ClassFileSource2 {
         }
         return null;
     }
+
+    @Override
+    public Pair<ByteBuffer, String> getClassFileBuffer(String path) throws IOException {
+        for (ClassFileSource2 source : sources) {
+            Pair<ByteBuffer, String> res;
+            if (source instanceof ClassFileBufferSource) {
+                res = ((ClassFileBufferSource) source).getClassFileBuffer(path);
+            } else {
+                Pair<byte[], String> content = source.getClassFileContent(path);
+                res = content == null ? null : Pair.make(ByteBuffer.wrap(content.getFirst()), content.getSecond());
+            }
+            if (res != null) {
+                return res;
+            }
+        }
+        return null;
+    }
 }
@@ -10,13 +10,13 @@ import org.benf.cfr.reader.util.StringUtils;
 import org.benf.cfr.reader.util.collections.Functional;
 import org.benf.cfr.reader.util.collections.ListFactory;
 import org.benf.cfr.reader.util.collections.MapFactory;
-import org.benf.cfr.reader.util.collections.SetFactory;
 import org.benf.cfr.reader.util.functors.Predicate;
 import org.benf.cfr.reader.util.functors.UnaryFunction;
 import org.benf.cfr.reader.util.getopt.Options;
 import org.benf.cfr.reader.util.getopt.OptionsImpl;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -25,18 +25,56 @@ import java.io.InputStreamReader;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import static org.benf.cfr.reader.bytecode.analysis.types.ClassNameUtils.getPackageAndClassNames;
 
-public class ClassFileSourceImpl implements ClassFileSource2 {
-    private final Set<String> explicitJars = SetFactory.newSet();
-    private Map<String, JarSourceEntry> classToPathMap;
+public class ClassFileSourceImpl implements ClassFileSource2, ClassFileBufferSource, StreamingJarSource {
+    // Added to by streamJarContent while other threads are looking classes up.
+    private final Set<String> explicitJars = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ClassPathMap<JarSourceEntry> classToPathMap;
     private final Options options;
     private ClassRenamer classRenamer;
     private ClassFileRelocator classRelocator;
+    private final ZipFilePool zipFilePool = new ZipFilePool();
+    private final Map<String, ZipBufferIndex> mappedJars = MapFactory.newMap();
+    private final InflaterPool inflaterPool = new InflaterPool();
+    /*
+     * A mapping is only released when it's collected, so forgetting a mapped jar (see close, invalidate) leaves it
+     * locked on Windows, and a jar rewritten in place while mapped can crash us, (SIGBUS).  So if jars may change
+     * under us, (see CfrSessionImpl), nothing is mapped - it's read instead.
+     */
+    private final boolean mapFiles;
+    // Null if we're not using stubs for library jars, (see OptionsImpl.CLASS_STUB_DIR).
+    private final File stubDir;
+    // Null values are jars we couldn't stub.
+    private final Map<String, ClassStubIndex> stubbedJars = MapFactory.newMap();
+    // Null unless we've been asked to use a different JDK's classes, (see OptionsImpl.JDK_HOME).
+    private final String jdkHome;
+    // Guarded by this.  Null if there's no module image, (or we haven't looked yet).
+    private JrtImage jrtImage;
+    private boolean jrtImageOpened;
+    // Jars still being walked by streamJarContent, and how many lookups are waiting on them.  Guarded by streamLock.
+    private final Object streamLock = new Object();
+    private final List<JarStream> walking = ListFactory.newList();
+    private volatile int awaitingWalk;
+    // Retained across analyses, (i.e. for every input given to CfrDriver.analyse).
+    private final ClassContentCache libraryContent = new ClassContentCache(LIBRARY_CONTENT_CACHE_BYTES);
+    private static final long LIBRARY_CONTENT_CACHE_BYTES = 32 * 1024 * 1024;
+    // Below this size, it's cheaper to read a class file than to map it.
+    private static final long MAP_THRESHOLD = 64 * 1024;
+    private static final int DIRECTORY_WALK_THREADS = 4;
     /*
      * Initialisation info
      */
@@ -52,29 +90,39 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
     }
 
     public ClassFileSourceImpl(Options options) {
+        this(options, true);
+    }
+
+    public ClassFileSourceImpl(Options options, boolean mapFiles) {
         this.options = options;
+        this.mapFiles = mapFiles;
+        String stubPath = options.getOption(OptionsImpl.CLASS_STUB_DIR);
+        this.stubDir = stubPath == null ? null : new File(stubPath);
+        this.jdkHome = options.getOption(OptionsImpl.JDK_HOME);
     }
 
     private byte[] getBytesFromFile(InputStream is, long length) throws IOException {
-        // Create the byte array to hold the data
-        byte[] bytes = new byte[(int) length];
+        try {
+            // Create the byte array to hold the data
+            byte[] bytes = new byte[(int) length];
 
-        // Read in the bytes
-        int offset = 0;
-        int numRead;
-        while (offset < bytes.length
-                && (numRead = is.read(bytes, offset, bytes.length - offset)) >= 0) {
-            offset += numRead;
-        }
+            // Read in the bytes
+            int offset = 0;
+            int numRead;
+            while (offset < bytes.length
+                    && (numRead = is.read(bytes, offset, bytes.length - offset)) >= 0) {
+                offset += numRead;
+            }
 
-        // Ensure all the bytes have been read in
-        if (offset < bytes.length) {
-            throw new IOException("Could not completely read file");
+            // Ensure all the bytes have been read in
+            if (offset < bytes.length) {
+                throw new IOException("Could not completely read file");
+            }
+            return bytes;
+        } finally {
+            // Close the input stream - the jar it came from may be kept open.
+            is.close();
         }
-
-        // Close the input stream and return bytes
-        is.close();
-        return bytes;
     }
 
     @Override
@@ -85,11 +133,32 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
         return res.substring(0, res.length()-6);
     }
 
+    /*
+     * Always a copy - the buffer may be shared with the library content cache, (or be a view of a mapped jar), and
+     * the caller is free to change what we hand out.  We only use views internally, (see getClassFileBuffer).
+     */
     @Override
     public Pair<byte [], String> getClassFileContent(final String inputPath) throws IOException {
-        Map<String, JarSourceEntry> classPathFiles = getClassPathClasses();
+        Pair<ByteBuffer, String> content = getClassFileBuffer(inputPath);
+        ByteBuffer buffer = content.getFirst();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return Pair.make(bytes, content.getSecond());
+    }
+
+    /*
+     * As getClassFileContent, but avoids copying where we can - class files in directories are read straight into
+     * (or mapped as) a buffer, and stored (uncompressed) jar entries are a view of the mapped jar.
+     */
+    @Override
+    public Pair<ByteBuffer, String> getClassFileBuffer(final String inputPath) throws IOException {
+        ClassPathMap<JarSourceEntry> classPathFiles = getClassPathClasses();
 
         JarSourceEntry jarEntry = classPathFiles.get(inputPath);
+        if (!isExplicit(jarEntry) && isWalking()) {
+            // A jar which is still being walked may yet provide it, and would take precedence.
+            jarEntry = awaitStreamed(classPathFiles, inputPath);
+        }
 
         // If path is an alias due to case insensitivity, restore to the correct name here, before
         // accessing zipfile.
@@ -101,37 +170,170 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
         ZipFile zipFile = null;
 
         try {
-            InputStream is;
-            long length;
-
             String usePath = classRelocator.correctPath(path);
-            boolean forceJar = jarEntry != null && explicitJars.contains(jarEntry.getPath());
+            boolean forceJar = isExplicit(jarEntry);
             File file = forceJar ? null : new File(usePath);
-            byte[] content;
+            ByteBuffer content;
             if (file != null && file.exists()) {
-                is = new FileInputStream(file);
-                length = file.length();
-                content = getBytesFromFile(is, length);
+                content = getBufferFromFile(file);
             } else if (jarEntry != null) {
-                zipFile = new ZipFile(new File(jarEntry.getPath()), ZipFile.OPEN_READ);
-                if (jarEntry.analysisType == AnalysisType.WAR) {
-                    path = MiscConstants.WAR_PREFIX + path;
+                String prefix = getClassPrefix(jarEntry.analysisType);
+                if (prefix != null) {
+                    path = prefix + path;
+                }
+                // Only library content is shared between analyses - explicitly analysed jars may change.
+                boolean library = !explicitJars.contains(jarEntry.getPath());
+                content = library ? libraryContent.get(inputPath) : null;
+                if (content == null && library && jarEntry.analysisType == AnalysisType.JAR && jarEntry.nested == null) {
+                    content = getStubContent(jarEntry.getPath(), path);
+                }
+                if (content == null && jarEntry.analysisType == AnalysisType.DIRECTORY) {
+                    content = getBufferFromFile(new File(jarEntry.getPath(), path));
+                }
+                if (content == null && jarEntry.nested != null) {
+                    content = jarEntry.nested.getContent(path, inflaterPool);
+                    if (content == null) throw new IOException("Can't read " + path + " from " + jarEntry.getPath());
+                    libraryContent.put(inputPath, content);
+                }
+                if (content == null) {
+                    content = getMappedJarContent(jarEntry.getPath(), path);
+                    // Stored entries are a view of the mapped jar - only inflated content is worth caching.
+                    if (content != null && library && !content.isDirect()) libraryContent.put(inputPath, content);
+                }
+                if (content == null) {
+                    zipFile = zipFilePool.acquire(jarEntry.getPath());
+                    ZipEntry zipEntry = zipFile.getEntry(path);
+                    InputStream is = zipFile.getInputStream(zipEntry);
+                    content = ByteBuffer.wrap(getBytesFromFile(is, zipEntry.getSize()));
+                    if (library) libraryContent.put(inputPath, content);
                 }
-                ZipEntry zipEntry = zipFile.getEntry(path);
-                length = zipEntry.getSize();
-                is = zipFile.getInputStream(zipEntry);
-                content = getBytesFromFile(is, length);
             } else {
-                // Fallback - can we get the bytes using a java9 extractor?
-                content = getInternalContent(inputPath);
+                content = libraryContent.get(inputPath);
+                if (content == null) {
+                    // Fallback - can we get the bytes using a java9 extractor?
+                    content = ByteBuffer.wrap(getInternalContent(inputPath));
+                    libraryContent.put(inputPath, content);
+                }
             }
 
             return Pair.make(content, inputPath);
         } finally {
-            if (zipFile != null) zipFile.close();
+            if (zipFile != null) zipFilePool.release(zipFile);
+        }
+    }
+
+    private ByteBuffer getBufferFromFile(File file) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+        try {
+            FileChannel channel = is.getChannel();
+            long length = channel.size();
+            if (mapFiles && length >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+            ByteBuffer res = ByteBuffer.allocate((int) length);
+            while (res.hasRemaining()) {
+                if (channel.read(res) < 0) throw new IOException("Could not completely read file");
+            }
+            res.flip();
+            return res;
+        } finally {
+            is.close();
         }
     }
 
+    /*
+     * If the entry is stored rather than deflated, we can return a view onto the mapped jar.  Otherwise, it's
+     * inflated straight from the mapping, (see ZipBufferIndex.inflate) rather than through a ZipFile stream.
+     *
+     * Null if the jar can't be mapped, (eg zip64), or we're not mapping, in which case it's read through ZipFile.
+     */
+    private ByteBuffer getMappedJarContent(String jarPath, String path) {
+        if (!mapFiles) return null;
+        ZipBufferIndex index;
+        synchronized (mappedJars) {
+            if (mappedJars.containsKey(jarPath)) {
+                index = mappedJars.get(jarPath);
+            } else {
+                index = ZipBufferIndex.map(new File(jarPath));
+                mappedJars.put(jarPath, index);
+            }
+        }
+        if (index == null) return null;
+        return index.getContent(path, inflaterPool);
+    }
+
+    /*
+     * Stubs are mapped, so there's no point in also caching them as library content.
+     */
+    private ByteBuffer getStubContent(String jarPath, String path) {
+        if (stubDir == null) return null;
+        ClassStubIndex index;
+        // Building a jar's stubs is a one off cost - other lookups can wait.
+        synchronized (stubbedJars) {
+            if (stubbedJars.containsKey(jarPath)) {
+                index = stubbedJars.get(jarPath);
+            } else {
+                index = ClassStubIndex.get(stubDir, new File(jarPath));
+                stubbedJars.put(jarPath, index);
+            }
+        }
+        if (index == null) return null;
+        return index.getContent(path);
+    }
+
+    /*
+     * Release any jar handles we're holding open - the source remains usable, and will reopen as required.
+     *
+     * Mapped jars are forgotten, but stay mapped until collected, (see mapFiles).
+     */
+    public void close() {
+        zipFilePool.close();
+        inflaterPool.close();
+        synchronized (mappedJars) {
+            mappedJars.clear();
+        }
+        synchronized (stubbedJars) {
+            stubbedJars.clear();
+        }
+        synchronized (this) {
+            if (jrtImage != null) jrtImage.close();
+            jrtImage = null;
+            jrtImageOpened = false;
+        }
+    }
+
+    /*
+     * A jar has changed on disk - forget it, and anything we might have read from it.
+     *
+     * We don't know which class path entries provided which cached content, so that all goes, and the class path is
+     * rescanned on next use.  (With a class path index, only jars which have changed are actually re-read.)
+     */
+    public void invalidate(String jarPath) {
+        String absolutePath = new File(jarPath).getAbsolutePath();
+        zipFilePool.close(absolutePath);
+        synchronized (mappedJars) {
+            mappedJars.remove(absolutePath);
+        }
+        synchronized (stubbedJars) {
+            stubbedJars.remove(absolutePath);
+        }
+        resetClassPath();
+    }
+
+    /*
+     * Forget everything - the class path is rescanned on next use.
+     */
+    public void invalidateAll() {
+        close();
+        resetClassPath();
+    }
+
+    private synchronized void resetClassPath() {
+        classToPathMap = null;
+        explicitJars.clear();
+        libraryContent.clear();
+    }
+
     /*
      * There are costs associated in the Class.forName method of finding the URL for a class -
      * notably the running of the static initialiser.
@@ -233,14 +435,45 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
         return null;
     }
 
+    /*
+     * If we can read the module image directly, it's authoritative - we don't go looking for the class by loading it.
+     * We never fall back to the running JDK if we've been asked to use another one.
+     */
     private byte[] getInternalContent(final String inputPath) throws IOException {
-        if (JrtPresent) {
+        JrtImage image = getJrtImage();
+        if (image != null) {
+            byte[] res = image.getContent(inputPath);
+            if (res != null) return res;
+        } else if (JrtPresent && jdkHome == null) {
             byte[] res = getContentByFromReflectedClass(inputPath);
             if (res != null) return res;
         }
         throw new IOException("No such file " + inputPath);
     }
 
+    private synchronized JrtImage getJrtImage() {
+        if (!jrtImageOpened) {
+            jrtImageOpened = true;
+            if (jdkHome == null) {
+                jrtImage = JrtPresent ? JrtImage.open(null) : null;
+            } else {
+                jrtImage = new File(jdkHome, MiscConstants.JDK_MODULES_IMAGE).isFile() ? JrtImage.open(jdkHome) : null;
+            }
+        }
+        return jrtImage;
+    }
+
+    /*
+     * Before java 9, the JDK's classes are in a jar.
+     */
+    private static String getJdkRuntimeJar(String jdkHome) {
+        for (String path : MiscConstants.JDK_RUNTIME_JARS) {
+            File file = new File(jdkHome, path);
+            if (file.isFile()) return file.getAbsolutePath();
+        }
+        return null;
+    }
+
     @Deprecated
     public Collection<String> addJar(String jarPath) {
         return addJarContent(jarPath, AnalysisType.JAR).getClassFiles();
@@ -255,10 +488,15 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
             throw new ConfusedCFRException("No such jar file " + jarPath);
         }
         jarPath = file.getAbsolutePath();
-        JarContent jarContent = processClassPathFile(file, false, analysisType);
+        JarContent jarContent = analysisType == AnalysisType.DIRECTORY ?
+                processDirectory(file) :
+                processClassPathFile(file, false, analysisType);
         if (jarContent == null){
             throw new ConfusedCFRException("Failed to load jar " + jarPath);
         }
+        if (analysisType == AnalysisType.BOOTJAR) {
+            addNestedLibraries(file, jarPath);
+        }
 
         JarSourceEntry sourceEntry = new JarSourceEntry(analysisType, jarPath);
 
@@ -281,13 +519,292 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
         return jarContent;
     }
 
+    /*
+     * As addJarContent, but the jar's directory is walked on a background thread, and class files are handed
+     * over as they're found.
+     *
+     * As with addJarContent, the jar's own classes take precedence over the class path (and the JDK).  So until the
+     * walk has finished, a lookup for a class the jar hasn't provided yet has to wait to see if it will.
+     *
+     * If we're renaming classes, we need to see every name before we can decide on any, so won't stream.
+     */
+    @Override
+    public JarStream streamJarContent(String jarPath, AnalysisType analysisType) {
+        final ClassPathMap<JarSourceEntry> classToPathMap = getClassPathClasses();
+        if (classRenamer != null || analysisType == AnalysisType.DIRECTORY) return null;
+
+        File file = new File(jarPath);
+        if (!file.exists()) {
+            throw new ConfusedCFRException("No such jar file " + jarPath);
+        }
+        jarPath = file.getAbsolutePath();
+        if (analysisType == AnalysisType.BOOTJAR) {
+            addNestedLibraries(file, jarPath);
+        }
+        /*
+         * If we can map the jar, its directory is read an entry at a time, and the entries become readable (see
+         * getMappedJarContent) as they're seen.  Otherwise, ZipFile reads the whole directory before we can start.
+         */
+        ByteBuffer mapped = mapFiles ? ZipBufferIndex.mapFile(file) : null;
+        final ZipBufferIndex.Walk walk = mapped == null ? null : ZipBufferIndex.walk(mapped, new ConcurrentHashMap<String, ZipBufferIndex.Entry>());
+        final ZipFile zipFile;
+        final JarStream stream;
+        if (walk != null) {
+            zipFile = null;
+            stream = new JarStream(getManifestContent(mapped));
+            synchronized (mappedJars) {
+                mappedJars.put(jarPath, walk.getIndex());
+            }
+        } else {
+            try {
+                zipFile = new ZipFile(file, ZipFile.OPEN_READ);
+            } catch (IOException e) {
+                throw new ConfusedCFRException("Failed to load jar " + jarPath);
+            }
+            stream = new JarStream(getManifestContent(zipFile));
+        }
+        final JarSourceEntry sourceEntry = new JarSourceEntry(analysisType, jarPath);
+        final String prefix = getClassPrefix(analysisType);
+        final String walkedPath = jarPath;
+        explicitJars.add(jarPath);
+        synchronized (streamLock) {
+            walking.add(stream);
+        }
+        Thread walker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RuntimeException failure = null;
+                try {
+                    if (walk != null) {
+                        ZipBufferIndex.Entry entry;
+                        while ((entry = walk.next()) != null) {
+                            if (!entry.isDirectory()) found(entry.getName());
+                        }
+                        if (walk.isCorrupt()) throw new ConfusedCFRException("Failed to read jar " + walkedPath);
+                    } else {
+                        Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+                        while (enumeration.hasMoreElements()) {
+                            ZipEntry entry = enumeration.nextElement();
+                            if (!entry.isDirectory()) found(entry.getName());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failure = new ConfusedCFRException("Interrupted reading jar " + walkedPath);
+                } catch (RuntimeException e) {
+                    failure = e;
+                } finally {
+                    if (zipFile != null) {
+                        try {
+                            zipFile.close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                    synchronized (streamLock) {
+                        walking.remove(stream);
+                        streamLock.notifyAll();
+                    }
+                    stream.finish(failure);
+                }
+            }
+
+            private void found(String name) throws InterruptedException {
+                if (!name.endsWith(".class")) return;
+                if (prefix != null) {
+                    // Strip (eg) WEB-INF/classes from the front of class files.
+                    if (!name.startsWith(prefix)) return;
+                    name = name.substring(prefix.length());
+                }
+                classToPathMap.put(name, sourceEntry);
+                if (awaitingWalk > 0) {
+                    synchronized (streamLock) {
+                        streamLock.notifyAll();
+                    }
+                }
+                stream.add(name);
+            }
+        }, "cfr-jar-walker");
+        walker.setDaemon(true);
+        walker.start();
+        return stream;
+    }
+
+    private boolean isWalking() {
+        synchronized (streamLock) {
+            return !walking.isEmpty();
+        }
+    }
+
+    private boolean isExplicit(JarSourceEntry jarEntry) {
+        return jarEntry != null && explicitJars.contains(jarEntry.getPath());
+    }
+
+    /*
+     * Wait until a jar which is being analysed provides path, or the ones still being walked have all been
+     * completely walked.  While anything's waiting, the walks mustn't wait for their consumers, as that may be us.
+     */
+    private JarSourceEntry awaitStreamed(ClassPathMap<JarSourceEntry> classPathFiles, String path) {
+        synchronized (streamLock) {
+            List<JarStream> unbounded = ListFactory.newList(walking);
+            awaitingWalk++;
+            for (JarStream stream : unbounded) {
+                stream.setBounded(false);
+            }
+            try {
+                JarSourceEntry res;
+                while (!isExplicit(res = classPathFiles.get(path)) && !walking.isEmpty()) {
+                    streamLock.wait();
+                }
+                return res;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return classPathFiles.get(path);
+            } finally {
+                awaitingWalk--;
+                for (JarStream stream : unbounded) {
+                    stream.setBounded(true);
+                }
+            }
+        }
+    }
+
+    /*
+     * An exploded jar - eg build output.  Listing a large tree is slow enough (especially over a network) to be worth
+     * doing in parallel; the result is sorted, so order doesn't depend on how the walk went.
+     */
+    private JarContent processDirectory(File directory) {
+        final ConcurrentLinkedQueue<String> found = new ConcurrentLinkedQueue<String>();
+        final Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger pending = new AtomicInteger(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(DIRECTORY_WALK_THREADS, new ThreadFactory() {
+            private int idx = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cfr-directory-walk-" + idx++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            executor.execute(new DirectoryLister(directory, "", found, visited, pending, done, executor));
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+        List<String> content = ListFactory.newList(found);
+        Collections.sort(content);
+        return new JarContentImpl(content, getManifestContent(directory), AnalysisType.DIRECTORY);
+    }
+
+    private static class DirectoryLister implements Runnable {
+        private final File dir;
+        private final String relativePath;
+        private final Queue<String> found;
+        private final Set<String> visited;
+        private final AtomicInteger pending;
+        private final CountDownLatch done;
+        private final ExecutorService executor;
+
+        private DirectoryLister(File dir, String relativePath, Queue<String> found, Set<String> visited, AtomicInteger pending, CountDownLatch done, ExecutorService executor) {
+            this.dir = dir;
+            this.relativePath = relativePath;
+            this.found = found;
+            this.visited = visited;
+            this.pending = pending;
+            this.done = done;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Don't go round in circles if there are links.
+                if (!visited.add(dir.getCanonicalPath())) return;
+                File[] files = dir.listFiles();
+                if (files == null) return;
+                for (File file : files) {
+                    String name = relativePath + file.getName();
+                    if (file.isDirectory()) {
+                        pending.incrementAndGet();
+                        executor.execute(new DirectoryLister(file, name + "/", found, visited, pending, done, executor));
+                    } else if (name.endsWith(".class")) {
+                        found.add(name);
+                    }
+                }
+            } catch (IOException ignore) {
+            } finally {
+                if (pending.decrementAndGet() == 0) done.countDown();
+            }
+        }
+    }
+
+    /*
+     * Libraries in a Spring Boot style jar are jars nested in BOOT-INF/lib - these are indexed in place, (as a view
+     * of the mapped outer jar, if they're stored, as they should be), and registered as library classes.
+     *
+     * As with a class loader, anything already on the class path takes precedence.
+     */
+    private void addNestedLibraries(File file, String jarPath) {
+        ZipBufferIndex outer;
+        if (mapFiles) {
+            outer = ZipBufferIndex.map(file);
+        } else {
+            try {
+                outer = ZipBufferIndex.create(getBufferFromFile(file));
+            } catch (IOException e) {
+                return;
+            }
+        }
+        if (outer == null) return;
+        for (ZipBufferIndex.Entry entry : outer.getEntries()) {
+            String name = entry.getName();
+            if (!name.startsWith(MiscConstants.BOOT_LIB_PREFIX) || !name.endsWith(".jar")) continue;
+            ByteBuffer nestedContent = outer.getContent(name, inflaterPool);
+            ZipBufferIndex nested = nestedContent == null ? null : ZipBufferIndex.create(nestedContent);
+            if (nested == null) continue;
+            JarSourceEntry sourceEntry = new JarSourceEntry(AnalysisType.JAR, jarPath + "!/" + name, nested);
+            for (ZipBufferIndex.Entry nestedEntry : nested.getEntries()) {
+                String className = nestedEntry.getName();
+                if (nestedEntry.isDirectory() || !className.endsWith(".class")) continue;
+                if (classToPathMap.get(className) == null) {
+                    classToPathMap.put(className, sourceEntry);
+                }
+            }
+        }
+    }
+
+    /*
+     * Classes in some types of archive live under a prefix, which isn't part of their path.
+     */
+    private static String getClassPrefix(AnalysisType analysisType) {
+        switch (analysisType) {
+            case WAR:
+                return MiscConstants.WAR_PREFIX;
+            case BOOTJAR:
+                return MiscConstants.BOOT_CLASSES_PREFIX;
+            default:
+                return null;
+        }
+    }
+
     private static class JarSourceEntry {
         private final AnalysisType analysisType;
         private final String path;
+        // If this is a jar inside another, (path is then not a file).
+        private final ZipBufferIndex nested;
 
         JarSourceEntry(AnalysisType analysisType, String path) {
+            this(analysisType, path, null);
+        }
+
+        JarSourceEntry(AnalysisType analysisType, String path, ZipBufferIndex nested) {
             this.analysisType = analysisType;
             this.path = path;
+            this.nested = nested;
         }
 
         @SuppressWarnings("unused")
@@ -300,15 +817,25 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
         }
     }
 
-    private Map<String, JarSourceEntry> getClassPathClasses() {
+    private synchronized ClassPathMap<JarSourceEntry> getClassPathClasses() {
         if (classToPathMap == null) {
             boolean dump = options.getOption(OptionsImpl.DUMP_CLASS_PATH);
+            // If we're dumping, we need to actually look.
+            String indexPath = options.getOption(OptionsImpl.CLASS_PATH_INDEX);
+            ClassPathIndex index = (dump || indexPath == null) ? null : ClassPathIndex.load(indexPath);
 
-            classToPathMap = MapFactory.newMap();
+            classToPathMap = new ClassPathMap<JarSourceEntry>();
             String classPath = System.getProperty("java.class.path");
-            String sunBootClassPath = System.getProperty("sun.boot.class.path");
-            if (sunBootClassPath != null) {
-                classPath += File.pathSeparatorChar + sunBootClassPath;
+            if (jdkHome == null) {
+                String sunBootClassPath = System.getProperty("sun.boot.class.path");
+                if (sunBootClassPath != null) {
+                    classPath += File.pathSeparatorChar + sunBootClassPath;
+                }
+            } else {
+                String runtimeJar = getJdkRuntimeJar(jdkHome);
+                if (runtimeJar != null) {
+                    classPath += File.pathSeparatorChar + runtimeJar;
+                }
             }
 
             if (dump) {
@@ -336,11 +863,11 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
                         File[] files = f.listFiles();
                         if (files != null) {
                             for (File file : files) {
-                                processClassPathFile(file, file.getAbsolutePath(), classToPathMap, AnalysisType.JAR, dump);
+                                processClassPathFile(file, file.getAbsolutePath(), classToPathMap, dump, index);
                             }
                         }
                     } else {
-                        processClassPathFile(f, path, classToPathMap, AnalysisType.JAR, dump);
+                        processClassPathFile(f, path, classToPathMap, dump, index);
                     }
                 } else {
                     if (dump) {
@@ -351,17 +878,30 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
             if (dump) {
                 System.out.println(" */");
             }
+            if (index != null) {
+                index.saveIfChanged();
+            }
         }
         return classToPathMap;
     }
 
-    private void processClassPathFile(File file, String absolutePath, Map<String, JarSourceEntry> classToPathMap, AnalysisType analysisType, boolean dump) {
-        JarContent content = processClassPathFile(file, dump, analysisType);
-        if (content == null) {
+    private void processClassPathFile(File file, String absolutePath, ClassPathMap<JarSourceEntry> classToPathMap, boolean dump, ClassPathIndex index) {
+        ClassPathIndex.Entry indexed = index == null ? null : index.get(file);
+        Collection<String> classFiles;
+        if (indexed != null) {
+            classFiles = indexed.getClassFiles();
+        } else {
+            JarContent content = processClassPathFile(file, dump, AnalysisType.JAR);
+            classFiles = content == null ? null : content.getClassFiles();
+            if (index != null) {
+                index.put(file, classFiles);
+            }
+        }
+        if (classFiles == null) {
             return;
         }
-        JarSourceEntry sourceEntry = new JarSourceEntry(analysisType, absolutePath);
-        for (String name : content.getClassFiles()) {
+        JarSourceEntry sourceEntry = new JarSourceEntry(AnalysisType.JAR, absolutePath);
+        for (String name : classFiles) {
             classToPathMap.put(name, sourceEntry);
         }
     }
@@ -396,13 +936,14 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
         } catch (IOException e) {
             return null;
         }
-        if (analysisType == AnalysisType.WAR) {
-            // Strip WEB-INF/classes from the front of class files.
-            final int prefixLen = MiscConstants.WAR_PREFIX.length();
+        final String prefix = getClassPrefix(analysisType);
+        if (prefix != null) {
+            // Strip (eg) WEB-INF/classes from the front of class files.
+            final int prefixLen = prefix.length();
             content = Functional.map(Functional.filter(content, new Predicate<String>() {
                 @Override
                 public boolean test(String in) {
-                    return in.startsWith(MiscConstants.WAR_PREFIX);
+                    return in.startsWith(prefix);
                 }
             }), new UnaryFunction<String, String>() {
                 @Override
@@ -418,28 +959,64 @@ public class ClassFileSourceImpl implements ClassFileSource2 {
     private Map<String, String> getManifestContent(ZipFile zipFile) {
         try {
             ZipEntry manifestEntry = zipFile.getEntry(MiscConstants.MANIFEST_PATH);
-            Map<String, String> manifest;
             if (manifestEntry == null) {
                 // Odd, but feh.
-                manifest = MapFactory.newMap();
-            } else {
-                InputStream is = zipFile.getInputStream(manifestEntry);
-                BufferedReader bis = new BufferedReader(new InputStreamReader(is));
-                manifest = MapFactory.newMap();
-                String line;
-                while (null != (line = bis.readLine())) {
-                    int idx = line.indexOf(':');
-                    if (idx <= 0) continue;
-                    manifest.put(line.substring(0, idx), line.substring(idx + 1).trim());
-                }
-                bis.close();
+                return MapFactory.newMap();
             }
-            return manifest;
+            return parseManifest(zipFile.getInputStream(manifestEntry));
         } catch (Exception e) {
             return MapFactory.newMap();
         }
     }
 
+    /*
+     * Jar tools put the manifest first, so this doesn't usually have to read far into the directory.
+     */
+    private Map<String, String> getManifestContent(ByteBuffer mappedJar) {
+        ZipBufferIndex.Walk walk = ZipBufferIndex.walk(mappedJar, MapFactory.<String, ZipBufferIndex.Entry>newMap());
+        if (walk == null) return MapFactory.newMap();
+        ZipBufferIndex.Entry entry;
+        while ((entry = walk.next()) != null) {
+            if (!entry.getName().equals(MiscConstants.MANIFEST_PATH)) continue;
+            ByteBuffer content = walk.getIndex().getContent(entry.getName(), inflaterPool);
+            if (content == null) break;
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            try {
+                return parseManifest(new ByteArrayInputStream(bytes));
+            } catch (Exception e) {
+                break;
+            }
+        }
+        return MapFactory.newMap();
+    }
+
+    private Map<String, String> getManifestContent(File directory) {
+        File manifestFile = new File(directory, MiscConstants.MANIFEST_PATH);
+        if (!manifestFile.isFile()) return MapFactory.newMap();
+        try {
+            return parseManifest(new FileInputStream(manifestFile));
+        } catch (Exception e) {
+            return MapFactory.newMap();
+        }
+    }
+
+    private static Map<String, String> parseManifest(InputStream is) throws IOException {
+        BufferedReader bis = new BufferedReader(new InputStreamReader(is));
+        try {
+            Map<String, String> manifest = MapFactory.newMap();
+            String line;
+            while (null != (line = bis.readLine())) {
+                int idx = line.indexOf(':');
+                if (idx <= 0) continue;
+                manifest.put(line.substring(0, idx), line.substring(idx + 1).trim());
+            }
+            return manifest;
+        } finally {
+            bis.close();
+        }
+    }
+
     @Override
     public void informAnalysisRelativePathDetail(String usePath, String specPath) {
         classRelocator = new ClassFileRelocator.Configurator().configureWith(usePath, specPath);
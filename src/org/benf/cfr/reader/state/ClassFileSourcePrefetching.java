@@ -0,0 +1,217 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.apiunreleased.ClassFileSource2;
+import org.benf.cfr.reader.apiunreleased.JarContent;
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
+import org.benf.cfr.reader.util.AnalysisType;
+import org.benf.cfr.reader.util.collections.SetFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Wraps a class file source, so that once a class has been loaded, the classes it refers to are read in the
+ * background (see OptionsImpl.PREFETCH_CLASSES).  Analysis of a class almost always goes on to load its supertypes,
+ * and very often the other classes it refers to, so by the time they're asked for they're usually resident.
+ *
+ * This is purely speculative - anything we can't fetch, or don't have room for, is simply fetched again when
+ * asked for.  Both the queue of outstanding fetches and the content held are bounded.
+ *
+ * Where content comes from depends on which jars have been added, and how we've been told to relocate class files,
+ * so changing either of those discards everything fetched so far.
+ *
+ * The delegate will be called from several threads at once.
+ */
+public class ClassFileSourcePrefetching implements ClassFileSource2, ClassFileBufferSource, StreamingJarSource, ClassFilePrefetcher {
+    private static final int THREADS = 2;
+    private static final int MAX_QUEUED = 512;
+    private static final long MAX_RESIDENT_BYTES = 16 * 1024 * 1024;
+
+    private final ClassFileSource2 delegate;
+    private final ThreadPoolExecutor executor;
+
+    // All guarded by lock.
+    private final Object lock = new Object();
+    // Oldest first out - if it's been there a while, it probably wasn't needed.
+    private final LinkedHashMap<String, Pair<ByteBuffer, String>> resident = new LinkedHashMap<String, Pair<ByteBuffer, String>>();
+    // Queued, in flight, or already fetched - so we don't fetch the same class repeatedly.
+    private final Set<String> requested = SetFactory.newSet();
+    private long residentBytes;
+    private int generation;
+    // As the delegate will have configured itself from the last relative path detail we passed on.
+    private ClassFileRelocator relocator = ClassFileRelocator.NopRelocator.Instance;
+
+    public ClassFileSourcePrefetching(ClassFileSource2 delegate) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 5, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED), new ThreadFactory() {
+            private int idx = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cfr-prefetch-" + idx++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Don't keep idle threads around between analyses.
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void prefetch(Collection<String> paths) {
+        for (final String path : paths) {
+            final int forGeneration;
+            synchronized (lock) {
+                if (!requested.add(path)) continue;
+                forGeneration = generation;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetch(path, forGeneration);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Queue is full - we're well ahead of analysis, so forget the rest.
+                synchronized (lock) {
+                    requested.remove(path);
+                }
+                return;
+            }
+        }
+    }
+
+    private void fetch(String path, int forGeneration) {
+        synchronized (lock) {
+            if (forGeneration != generation) return;
+        }
+        Pair<ByteBuffer, String> content;
+        try {
+            content = getDelegateBuffer(path);
+        } catch (IOException e) {
+            return;
+        } catch (RuntimeException e) {
+            return;
+        }
+        int size = content.getFirst().remaining();
+        if (size > MAX_RESIDENT_BYTES) return;
+        synchronized (lock) {
+            if (forGeneration != generation) return;
+            resident.put(path, content);
+            residentBytes += size;
+            Iterator<Pair<ByteBuffer, String>> iterator = resident.values().iterator();
+            while (residentBytes > MAX_RESIDENT_BYTES && iterator.hasNext()) {
+                residentBytes -= iterator.next().getFirst().remaining();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Pair<ByteBuffer, String> getDelegateBuffer(String path) throws IOException {
+        if (delegate instanceof ClassFileBufferSource) {
+            return ((ClassFileBufferSource) delegate).getClassFileBuffer(path);
+        }
+        Pair<byte[], String> content = delegate.getClassFileContent(path);
+        return Pair.make(ByteBuffer.wrap(content.getFirst()), content.getSecond());
+    }
+
+    /*
+     * Prefetched content is handed over (and forgotten) the first time it's asked for - after that, it's cached
+     * as a class file anyway.
+     */
+    @Override
+    public Pair<ByteBuffer, String> getClassFileBuffer(String path) throws IOException {
+        synchronized (lock) {
+            Pair<ByteBuffer, String> content = resident.remove(path);
+            if (content != null) {
+                residentBytes -= content.getFirst().remaining();
+                return content;
+            }
+        }
+        return getDelegateBuffer(path);
+    }
+
+    /*
+     * Always a copy, as the delegate's buffer may be shared, (see ClassFileSourceImpl.getClassFileContent).
+     */
+    @Override
+    public Pair<byte[], String> getClassFileContent(String path) throws IOException {
+        Pair<ByteBuffer, String> content = getClassFileBuffer(path);
+        ByteBuffer buffer = content.getFirst();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return Pair.make(bytes, content.getSecond());
+    }
+
+    private void invalidate() {
+        synchronized (lock) {
+            generation++;
+            resident.clear();
+            requested.clear();
+            residentBytes = 0;
+        }
+    }
+
+    /*
+     * Drop anything fetched - this remains usable.
+     */
+    public void close() {
+        invalidate();
+    }
+
+    /*
+     * Invalidate after the delegate has changed, so anything fetched while it was changing is discarded.
+     */
+    @Override
+    public JarContent addJarContent(String jarPath, AnalysisType analysisType) {
+        JarContent res = delegate.addJarContent(jarPath, analysisType);
+        invalidate();
+        return res;
+    }
+
+    @Override
+    public JarStream streamJarContent(String jarPath, AnalysisType analysisType) {
+        if (!(delegate instanceof StreamingJarSource)) return null;
+        JarStream res = ((StreamingJarSource) delegate).streamJarContent(jarPath, analysisType);
+        invalidate();
+        return res;
+    }
+
+    /*
+     * This is called for every class analysed, but usually doesn't change where anything comes from, (eg
+     * everything in a jar, or under the same directory, is relocated the same way).
+     */
+    @Override
+    public void informAnalysisRelativePathDetail(String usePath, String classFilePath) {
+        delegate.informAnalysisRelativePathDetail(usePath, classFilePath);
+        ClassFileRelocator next = new ClassFileRelocator.Configurator().configureWith(usePath, classFilePath);
+        synchronized (lock) {
+            if (next.equals(relocator)) return;
+            relocator = next;
+        }
+        invalidate();
+    }
+
+    @Override
+    public Collection<String> addJar(String jarPath) {
+        Collection<String> res = delegate.addJar(jarPath);
+        invalidate();
+        return res;
+    }
+
+    @Override
+    public String getPossiblyRenamedPath(String path) {
+        return delegate.getPossiblyRenamedPath(path);
+    }
+}
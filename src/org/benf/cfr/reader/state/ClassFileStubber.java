@@ -0,0 +1,435 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.ListFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * Reduces a class file to a stub - what we need of a library class to resolve types against it.
+ *
+ * The stub is still a class file, (so it's read as any other), but method bodies are replaced by empty code
+ * attributes, attributes which only matter to the code or for dumping, (line numbers, local variables, stack maps,
+ * bootstrap methods, type annotations, source file etc) are dropped, and the constant pool is reduced to what's
+ * left referring to it.  Names, access flags, supers, signatures, member prototypes, constant values, exceptions,
+ * inner class information and annotations are retained.
+ *
+ * Constant pool references in what we keep are found by offset, so the same walk serves to find what's in use,
+ * and to renumber it.
+ *
+ * If we don't understand a class file, it's returned unchanged.
+ */
+class ClassFileStubber {
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_FLOAT = 4;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_FIELD_REF = 9;
+    private static final int TAG_METHOD_REF = 10;
+    private static final int TAG_INTERFACE_METHOD_REF = 11;
+    private static final int TAG_NAME_AND_TYPE = 12;
+    private static final int TAG_METHOD_HANDLE = 15;
+    private static final int TAG_METHOD_TYPE = 16;
+    private static final int TAG_DYNAMIC = 17;
+    private static final int TAG_INVOKE_DYNAMIC = 18;
+    private static final int TAG_MODULE = 19;
+    private static final int TAG_PACKAGE = 20;
+
+    private static final int[] NO_REFS = new int[0];
+    private static final int[] REF_AT_1 = new int[]{1};
+    private static final int[] REF_AT_2 = new int[]{2};
+    private static final int[] REF_AT_3 = new int[]{3};
+    private static final int[] REFS_AT_1_3 = new int[]{1, 3};
+
+    private static final String CODE = "Code";
+
+    private final byte[] data;
+    // Original constant pool - start offset of each entry, (0 for the unusable slot after a long or double).
+    private int[] cpOffsets;
+    private int cpEnd;
+
+    private ClassFileStubber(byte[] data) {
+        this.data = data;
+    }
+
+    static byte[] stub(byte[] classFile) {
+        try {
+            byte[] res = new ClassFileStubber(classFile).stub();
+            return res == null ? classFile : res;
+        } catch (RuntimeException e) {
+            // Truncated, or something we don't understand.
+            return classFile;
+        } catch (IOException e) {
+            return classFile;
+        }
+    }
+
+    /*
+     * A kept structure - everything from start to end is copied, with constant pool references at refs rewritten.
+     * A code attribute is written as an empty one, and an attribute count (which has changed) is written afresh.
+     */
+    private static class Span {
+        private final int start;
+        private final int end;
+        private final List<Integer> refs;
+        private final boolean emptyCode;
+        private final int count;
+
+        private Span(int start, int end, List<Integer> refs, boolean emptyCode, int count) {
+            this.start = start;
+            this.end = end;
+            this.refs = refs;
+            this.emptyCode = emptyCode;
+            this.count = count;
+        }
+
+        static Span copy(int start, int end, List<Integer> refs) {
+            return new Span(start, end, refs, false, -1);
+        }
+
+        static Span emptyCode(int start) {
+            return new Span(start, start, ListFactory.<Integer>newList(), true, -1);
+        }
+
+        static Span count(int count) {
+            return new Span(0, 0, ListFactory.<Integer>newList(), false, count);
+        }
+    }
+
+    private byte[] stub() throws IOException {
+        if (u4(0) != 0xCAFEBABE) return null;
+        int minor = u2(4);
+        int major = u2(6);
+        // Before 1.0, code attributes are laid out differently.
+        if (major < 45 || (major == 45 && minor < 3)) return null;
+        int cpCount = u2(8);
+        readConstantPool(cpCount);
+
+        List<Span> spans = ListFactory.newList();
+        int pos = cpEnd;
+        // access flags, this, super, interfaces.
+        int numInterfaces = u2(pos + 6);
+        List<Integer> headerRefs = ListFactory.newList();
+        headerRefs.add(pos + 2);
+        headerRefs.add(pos + 4);
+        for (int x = 0; x < numInterfaces; ++x) {
+            headerRefs.add(pos + 8 + 2 * x);
+        }
+        pos += 8 + 2 * numInterfaces;
+        spans.add(Span.copy(cpEnd, pos, headerRefs));
+        pos = members(pos, spans);
+        pos = members(pos, spans);
+        pos = attributes(pos, spans);
+        if (pos != data.length) return null;
+
+        // Find what's in use, and give it new (dense, but in the original order) indices.
+        boolean[] used = new boolean[cpCount];
+        for (Span span : spans) {
+            for (Integer ref : span.refs) {
+                markUsed(u2(ref), used);
+            }
+            if (span.emptyCode) markUsed(u2(span.start), used);
+        }
+        int[] remap = new int[cpCount];
+        int next = 1;
+        for (int idx = 1; idx < cpCount; ++idx) {
+            if (!used[idx]) continue;
+            remap[idx] = next;
+            int tag = u1(cpOffsets[idx]);
+            next += (tag == TAG_LONG || tag == TAG_DOUBLE) ? 2 : 1;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2);
+        DataOutputStream os = new DataOutputStream(bos);
+        os.write(data, 0, 8);
+        os.writeShort(next);
+        for (int idx = 1; idx < cpCount; ++idx) {
+            if (!used[idx]) continue;
+            int start = cpOffsets[idx];
+            List<Integer> refs = ListFactory.newList();
+            for (int ref : cpRefs(u1(start))) {
+                refs.add(start + ref);
+            }
+            writeRemapped(os, start, start + cpEntryLength(start), refs, remap);
+        }
+        for (Span span : spans) {
+            if (span.count >= 0) {
+                os.writeShort(span.count);
+            } else if (span.emptyCode) {
+                os.writeShort(remap[u2(span.start)]);
+                // length, max stack, max locals, code length, exception table length, attribute count.
+                os.writeInt(12);
+                os.writeShort(0);
+                os.writeShort(0);
+                os.writeInt(0);
+                os.writeShort(0);
+                os.writeShort(0);
+            } else {
+                writeRemapped(os, span.start, span.end, span.refs, remap);
+            }
+        }
+        os.flush();
+        return bos.toByteArray();
+    }
+
+    private void readConstantPool(int cpCount) {
+        cpOffsets = new int[cpCount];
+        int pos = 10;
+        for (int idx = 1; idx < cpCount; ++idx) {
+            cpOffsets[idx] = pos;
+            int tag = u1(pos);
+            pos += cpEntryLength(pos);
+            if (tag == TAG_LONG || tag == TAG_DOUBLE) ++idx;
+        }
+        cpEnd = pos;
+    }
+
+    private int cpEntryLength(int pos) {
+        switch (u1(pos)) {
+            case TAG_UTF8:
+                return 3 + u2(pos + 1);
+            case TAG_INTEGER:
+            case TAG_FLOAT:
+            case TAG_FIELD_REF:
+            case TAG_METHOD_REF:
+            case TAG_INTERFACE_METHOD_REF:
+            case TAG_NAME_AND_TYPE:
+            case TAG_DYNAMIC:
+            case TAG_INVOKE_DYNAMIC:
+                return 5;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                return 9;
+            case TAG_CLASS:
+            case TAG_STRING:
+            case TAG_METHOD_TYPE:
+            case TAG_MODULE:
+            case TAG_PACKAGE:
+                return 3;
+            case TAG_METHOD_HANDLE:
+                return 4;
+            default:
+                throw new IllegalStateException("Unknown constant pool tag");
+        }
+    }
+
+    /*
+     * Offsets (from the start of the entry) of constant pool references in an entry.
+     * The bootstrap method index of a dynamic entry isn't a constant pool reference - but nothing we keep can
+     * refer to one anyway.
+     */
+    private static int[] cpRefs(int tag) {
+        switch (tag) {
+            case TAG_CLASS:
+            case TAG_STRING:
+            case TAG_METHOD_TYPE:
+            case TAG_MODULE:
+            case TAG_PACKAGE:
+                return REF_AT_1;
+            case TAG_FIELD_REF:
+            case TAG_METHOD_REF:
+            case TAG_INTERFACE_METHOD_REF:
+            case TAG_NAME_AND_TYPE:
+                return REFS_AT_1_3;
+            case TAG_METHOD_HANDLE:
+                return REF_AT_2;
+            case TAG_DYNAMIC:
+            case TAG_INVOKE_DYNAMIC:
+                return REF_AT_3;
+            default:
+                return NO_REFS;
+        }
+    }
+
+    private void markUsed(int idx, boolean[] used) {
+        // 0 is 'none', where that's allowed.
+        if (idx == 0 || used[idx]) return;
+        used[idx] = true;
+        int start = cpOffsets[idx];
+        for (int ref : cpRefs(u1(start))) {
+            markUsed(u2(start + ref), used);
+        }
+    }
+
+    /*
+     * refs are absolute, and ascending.
+     */
+    private void writeRemapped(DataOutputStream os, int start, int end, List<Integer> refs, int[] remap) throws IOException {
+        int pos = start;
+        for (Integer ref : refs) {
+            os.write(data, pos, ref - pos);
+            os.writeShort(remap[u2(ref)]);
+            pos = ref + 2;
+        }
+        os.write(data, pos, end - pos);
+    }
+
+    /*
+     * Fields or methods.
+     */
+    private int members(int pos, List<Span> spans) {
+        int count = u2(pos);
+        spans.add(Span.copy(pos, pos + 2, ListFactory.<Integer>newList()));
+        pos += 2;
+        for (int x = 0; x < count; ++x) {
+            List<Integer> refs = ListFactory.newList();
+            refs.add(pos + 2);
+            refs.add(pos + 4);
+            spans.add(Span.copy(pos, pos + 6, refs));
+            pos = attributes(pos + 6, spans);
+        }
+        return pos;
+    }
+
+    /*
+     * The attribute count has to reflect what we keep.
+     */
+    private int attributes(int pos, List<Span> spans) {
+        int count = u2(pos);
+        List<Span> kept = ListFactory.newList();
+        pos += 2;
+        for (int x = 0; x < count; ++x) {
+            int nameIdx = u2(pos);
+            int length = u4(pos + 2);
+            int body = pos + 6;
+            int end = body + length;
+            String name = utf8(nameIdx);
+            if (CODE.equals(name)) {
+                kept.add(Span.emptyCode(pos));
+            } else {
+                List<Integer> refs = ListFactory.newList();
+                refs.add(pos);
+                if (attributeRefs(name, body, end, refs)) {
+                    kept.add(Span.copy(pos, end, refs));
+                }
+            }
+            pos = end;
+        }
+        spans.add(Span.count(kept.size()));
+        spans.addAll(kept);
+        return pos;
+    }
+
+    /*
+     * False if we don't keep this attribute.
+     */
+    private boolean attributeRefs(String name, int body, int end, List<Integer> refs) {
+        if ("Signature".equals(name) || "ConstantValue".equals(name)) {
+            refs.add(body);
+        } else if ("Exceptions".equals(name)) {
+            int count = u2(body);
+            for (int x = 0; x < count; ++x) {
+                refs.add(body + 2 + 2 * x);
+            }
+        } else if ("InnerClasses".equals(name)) {
+            int count = u2(body);
+            for (int x = 0; x < count; ++x) {
+                int entry = body + 2 + 8 * x;
+                refs.add(entry);
+                refs.add(entry + 2);
+                refs.add(entry + 4);
+            }
+        } else if ("EnclosingMethod".equals(name)) {
+            refs.add(body);
+            refs.add(body + 2);
+        } else if ("Deprecated".equals(name) || "Synthetic".equals(name)) {
+            // Nothing to do.
+        } else if ("RuntimeVisibleAnnotations".equals(name) || "RuntimeInvisibleAnnotations".equals(name)) {
+            annotations(body, refs);
+        } else if ("RuntimeVisibleParameterAnnotations".equals(name) || "RuntimeInvisibleParameterAnnotations".equals(name)) {
+            int count = u1(body);
+            int pos = body + 1;
+            for (int x = 0; x < count; ++x) {
+                pos = annotations(pos, refs);
+            }
+        } else if ("AnnotationDefault".equals(name)) {
+            elementValue(body, refs);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private int annotations(int pos, List<Integer> refs) {
+        int count = u2(pos);
+        pos += 2;
+        for (int x = 0; x < count; ++x) {
+            pos = annotation(pos, refs);
+        }
+        return pos;
+    }
+
+    private int annotation(int pos, List<Integer> refs) {
+        refs.add(pos);
+        int pairs = u2(pos + 2);
+        pos += 4;
+        for (int x = 0; x < pairs; ++x) {
+            refs.add(pos);
+            pos = elementValue(pos + 2, refs);
+        }
+        return pos;
+    }
+
+    private int elementValue(int pos, List<Integer> refs) {
+        char tag = (char) u1(pos);
+        switch (tag) {
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 's':
+            case 'c':
+                refs.add(pos + 1);
+                return pos + 3;
+            case 'e':
+                refs.add(pos + 1);
+                refs.add(pos + 3);
+                return pos + 5;
+            case '@':
+                return annotation(pos + 1, refs);
+            case '[': {
+                int count = u2(pos + 1);
+                pos += 3;
+                for (int x = 0; x < count; ++x) {
+                    pos = elementValue(pos, refs);
+                }
+                return pos;
+            }
+            default:
+                throw new IllegalStateException("Unknown element value tag");
+        }
+    }
+
+    private String utf8(int idx) {
+        int start = cpOffsets[idx];
+        if (u1(start) != TAG_UTF8) return null;
+        int length = u2(start + 1);
+        // Attribute names are plain ascii - anything else isn't one we're looking for.
+        StringBuilder sb = new StringBuilder(length);
+        for (int x = 0; x < length; ++x) {
+            sb.append((char) u1(start + 3 + x));
+        }
+        return sb.toString();
+    }
+
+    private int u1(int pos) {
+        return data[pos] & 0xff;
+    }
+
+    private int u2(int pos) {
+        return ((data[pos] & 0xff) << 8) | (data[pos + 1] & 0xff);
+    }
+
+    private int u4(int pos) {
+        return (u2(pos) << 16) | u2(pos + 2);
+    }
+}
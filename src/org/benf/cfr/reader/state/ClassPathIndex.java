@@ -0,0 +1,187 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Persistent record of which class files are in each class path jar (see OptionsImpl.CLASS_PATH_INDEX), so that
+ * we don't have to open every jar on a large class path just to find out what's in it.
+ *
+ * A jar's entry is only trusted if its size and modification time are as they were when it was indexed.
+ * We also remember files which turned out not to be jars at all.
+ *
+ * Class names are stored grouped by package, as there's a lot of redundancy in them.
+ */
+class ClassPathIndex {
+    private static final int MAGIC = 0xCFC1A550;
+    private static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final Map<String, Entry> entries;
+    private boolean dirty;
+
+    static class Entry {
+        private final long size;
+        private final long lastModified;
+        // Null if this isn't a jar.
+        private final Collection<String> classFiles;
+
+        private Entry(long size, long lastModified, Collection<String> classFiles) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classFiles = classFiles;
+        }
+
+        Collection<String> getClassFiles() {
+            return classFiles;
+        }
+
+        private boolean isCurrent(File jar) {
+            return jar.length() == size && jar.lastModified() == lastModified;
+        }
+    }
+
+    private ClassPathIndex(File file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /*
+     * A missing or unreadable index is just empty.
+     */
+    static ClassPathIndex load(String path) {
+        File file = new File(path);
+        Map<String, Entry> entries = MapFactory.newOrderedMap();
+        if (file.isFile()) {
+            try {
+                read(file, entries);
+            } catch (IOException e) {
+                entries.clear();
+            }
+        }
+        return new ClassPathIndex(file, entries);
+    }
+
+    /*
+     * Null if we don't know about this jar, or it's changed.
+     */
+    Entry get(File jar) {
+        Entry entry = entries.get(jar.getAbsolutePath());
+        if (entry == null || !entry.isCurrent(jar)) return null;
+        return entry;
+    }
+
+    void put(File jar, Collection<String> classFiles) {
+        entries.put(jar.getAbsolutePath(), new Entry(jar.length(), jar.lastModified(), classFiles));
+        dirty = true;
+    }
+
+    /*
+     * Written to a temporary file and renamed into place, so concurrent runs don't see partial indices.
+     * Failure to save isn't fatal, we'll just have to do the work again next time.
+     */
+    void saveIfChanged() {
+        if (!dirty) return;
+        dirty = false;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) return;
+        File tmp = null;
+        try {
+            // Unique across processes, as well as threads.
+            tmp = File.createTempFile(file.getName(), ".tmp", parent);
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                write(os);
+            } finally {
+                os.close();
+            }
+            // Not atomic on all platforms, but the index is only ever a hint.
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            if (tmp != null) tmp.delete();
+        }
+    }
+
+    private static void read(File file, Map<String, Entry> entries) throws IOException {
+        DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (is.readInt() != MAGIC || is.readInt() != FORMAT_VERSION) return;
+            int jarCount = is.readInt();
+            for (int x = 0; x < jarCount; ++x) {
+                String path = is.readUTF();
+                long size = is.readLong();
+                long lastModified = is.readLong();
+                List<String> classFiles = null;
+                if (is.readBoolean()) {
+                    int packageCount = is.readInt();
+                    String[] packages = new String[packageCount];
+                    for (int y = 0; y < packageCount; ++y) {
+                        packages[y] = is.readUTF();
+                    }
+                    int classCount = is.readInt();
+                    classFiles = ListFactory.newList(classCount);
+                    for (int y = 0; y < classCount; ++y) {
+                        String pkg = packages[is.readInt()];
+                        classFiles.add(pkg + is.readUTF());
+                    }
+                }
+                entries.put(path, new Entry(size, lastModified, classFiles));
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private void write(DataOutputStream os) throws IOException {
+        Map<String, Entry> toWrite = MapFactory.newOrderedMap();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            // Forget anything that's gone away.
+            if (new File(entry.getKey()).exists()) toWrite.put(entry.getKey(), entry.getValue());
+        }
+        os.writeInt(MAGIC);
+        os.writeInt(FORMAT_VERSION);
+        os.writeInt(toWrite.size());
+        for (Map.Entry<String, Entry> mapEntry : toWrite.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            os.writeUTF(mapEntry.getKey());
+            os.writeLong(entry.size);
+            os.writeLong(entry.lastModified);
+            Collection<String> classFiles = entry.classFiles;
+            os.writeBoolean(classFiles != null);
+            if (classFiles == null) continue;
+            Map<String, Integer> packageIdx = MapFactory.newOrderedMap();
+            for (String classFile : classFiles) {
+                String pkg = getPackage(classFile);
+                if (!packageIdx.containsKey(pkg)) packageIdx.put(pkg, packageIdx.size());
+            }
+            os.writeInt(packageIdx.size());
+            for (String pkg : packageIdx.keySet()) {
+                os.writeUTF(pkg);
+            }
+            os.writeInt(classFiles.size());
+            for (String classFile : classFiles) {
+                String pkg = getPackage(classFile);
+                os.writeInt(packageIdx.get(pkg));
+                os.writeUTF(classFile.substring(pkg.length()));
+            }
+        }
+    }
+
+    private static String getPackage(String classFile) {
+        return classFile.substring(0, classFile.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,65 @@
+package org.benf.cfr.reader.state;
+
+/*
+ * Class file path -> where to find it.  There can be hundreds of thousands of these on a large class path, and
+ * we only ever get and put - so rather than a HashMap node per class, keep keys and values in flat open
+ * addressed arrays.
+ *
+ * Synchronized, as a streamed jar (see OptionsImpl.STREAM_JAR) is added to while classes are being looked up.
+ */
+class ClassPathMap<V> {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    synchronized V get(String key) {
+        int idx = find(keys, key);
+        return keys[idx] == null ? null : (V) values[idx];
+    }
+
+    synchronized void put(String key, V value) {
+        int idx = find(keys, key);
+        if (keys[idx] == null) {
+            // Keep load factor under 1/2.
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+                idx = find(keys, key);
+            }
+            keys[idx] = key;
+            size++;
+        }
+        values[idx] = value;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private static int find(String[] keys, String key) {
+        int mask = keys.length - 1;
+        int h = key.hashCode();
+        int idx = (h ^ (h >>> 16)) & mask;
+        while (true) {
+            String existing = keys[idx];
+            if (existing == null || existing.equals(key)) return idx;
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        for (int x = 0; x < oldKeys.length; ++x) {
+            String key = oldKeys[x];
+            if (key == null) continue;
+            int idx = find(keys, key);
+            keys[idx] = key;
+            values[idx] = oldValues[x];
+        }
+    }
+}
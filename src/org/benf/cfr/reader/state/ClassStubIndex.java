@@ -0,0 +1,209 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/*
+ * Stubs (see ClassFileStubber) of every class in a class path jar, kept in a single file in the stub directory
+ * (see OptionsImpl.CLASS_STUB_DIR), so that library classes can be resolved without reading the jar, or parsing
+ * code we'll never look at.
+ *
+ * As with ClassPathIndex, a stub file is only trusted if the jar's size and modification time are as they were
+ * when it was written - otherwise it's rebuilt.
+ *
+ * The index (class names grouped by package) comes first, then the stubs themselves, which are mapped.
+ */
+class ClassStubIndex {
+    private static final int MAGIC = 0xCFC1A5B0;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, Integer> indices;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final ByteBuffer stubs;
+
+    private ClassStubIndex(Map<String, Integer> indices, int[] offsets, int[] lengths, ByteBuffer stubs) {
+        this.indices = indices;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.stubs = stubs;
+    }
+
+    /*
+     * Null if this isn't in the jar.
+     */
+    ByteBuffer getContent(String path) {
+        Integer idx = indices.get(path);
+        if (idx == null) return null;
+        ByteBuffer res = stubs.duplicate();
+        res.position(offsets[idx]);
+        res.limit(offsets[idx] + lengths[idx]);
+        return res.slice();
+    }
+
+    /*
+     * Null if we can't read the jar, or write its stubs - in which case the jar should be used directly.
+     */
+    static ClassStubIndex get(File stubDir, File jar) {
+        File file = getStubFile(stubDir, jar);
+        ClassStubIndex res = load(file, jar);
+        if (res != null) return res;
+        if (!build(file, jar)) return null;
+        return load(file, jar);
+    }
+
+    /*
+     * Jars with the same name in different places mustn't collide.
+     */
+    private static File getStubFile(File stubDir, File jar) {
+        String path = jar.getAbsolutePath();
+        return new File(stubDir, jar.getName() + "-" + Integer.toHexString(path.hashCode()) + ".stubs");
+    }
+
+    private static ClassStubIndex load(File file, File jar) {
+        if (!file.isFile()) return null;
+        try {
+            FileInputStream fis = new FileInputStream(file);
+            DataInputStream is = new DataInputStream(new BufferedInputStream(fis));
+            try {
+                if (is.readInt() != MAGIC || is.readInt() != FORMAT_VERSION) return null;
+                if (is.readLong() != jar.length() || is.readLong() != jar.lastModified()) return null;
+                int packageCount = is.readInt();
+                String[] packages = new String[packageCount];
+                for (int x = 0; x < packageCount; ++x) {
+                    packages[x] = is.readUTF();
+                }
+                int classCount = is.readInt();
+                Map<String, Integer> indices = MapFactory.newMap();
+                int[] offsets = new int[classCount];
+                int[] lengths = new int[classCount];
+                for (int x = 0; x < classCount; ++x) {
+                    String pkg = packages[is.readInt()];
+                    indices.put(pkg + is.readUTF(), x);
+                    offsets[x] = is.readInt();
+                    lengths[x] = is.readInt();
+                }
+                long stubsLength = is.readLong();
+                FileChannel channel = fis.getChannel();
+                ByteBuffer stubs = channel.map(FileChannel.MapMode.READ_ONLY, channel.size() - stubsLength, stubsLength);
+                return new ClassStubIndex(indices, offsets, lengths, stubs);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Written to a temporary file and renamed into place, so concurrent runs don't see partial stubs.
+     */
+    private static boolean build(File file, File jar) {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) return false;
+        File tmp = null;
+        try {
+            long jarLength = jar.length();
+            long jarLastModified = jar.lastModified();
+            List<String> names = ListFactory.newList();
+            List<Integer> lengths = ListFactory.newList();
+            ByteArrayOutputStream stubs = new ByteArrayOutputStream();
+            ZipFile zipFile = new ZipFile(jar, ZipFile.OPEN_READ);
+            try {
+                Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+                while (enumeration.hasMoreElements()) {
+                    ZipEntry entry = enumeration.nextElement();
+                    String name = entry.getName();
+                    if (entry.isDirectory() || !name.endsWith(".class")) continue;
+                    byte[] stub = ClassFileStubber.stub(readFully(zipFile.getInputStream(entry)));
+                    names.add(name);
+                    lengths.add(stub.length);
+                    stubs.write(stub);
+                }
+            } finally {
+                zipFile.close();
+            }
+
+            // Unique across processes, as well as threads.
+            tmp = File.createTempFile(file.getName(), ".tmp", parent);
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                os.writeInt(MAGIC);
+                os.writeInt(FORMAT_VERSION);
+                os.writeLong(jarLength);
+                os.writeLong(jarLastModified);
+                Map<String, Integer> packageIdx = MapFactory.newOrderedMap();
+                for (String name : names) {
+                    String pkg = getPackage(name);
+                    if (!packageIdx.containsKey(pkg)) packageIdx.put(pkg, packageIdx.size());
+                }
+                os.writeInt(packageIdx.size());
+                for (String pkg : packageIdx.keySet()) {
+                    os.writeUTF(pkg);
+                }
+                os.writeInt(names.size());
+                int offset = 0;
+                for (int x = 0; x < names.size(); ++x) {
+                    String name = names.get(x);
+                    String pkg = getPackage(name);
+                    os.writeInt(packageIdx.get(pkg));
+                    os.writeUTF(name.substring(pkg.length()));
+                    os.writeInt(offset);
+                    os.writeInt(lengths.get(x));
+                    offset += lengths.get(x);
+                }
+                os.writeLong(stubs.size());
+                stubs.writeTo(os);
+            } finally {
+                os.close();
+            }
+            // Not atomic on all platforms - but the jar's size and date are checked when it's loaded anyway.
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                tmp.delete();
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            if (tmp != null) tmp.delete();
+            return false;
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                bos.write(buffer, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static String getPackage(String classFile) {
+        return classFile.substring(0, classFile.lastIndexOf('/') + 1);
+    }
+}
@@ -2,6 +2,7 @@ package org.benf.cfr.reader.state;
 
 import org.benf.cfr.reader.apiunreleased.ClassFileSource2;
 import org.benf.cfr.reader.apiunreleased.JarContent;
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
 import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.bytecode.analysis.types.ClassNameUtils;
 import org.benf.cfr.reader.bytecode.analysis.types.JavaRefTypeInstance;
@@ -14,6 +15,7 @@ import org.benf.cfr.reader.util.CannotLoadClassException;
 import org.benf.cfr.reader.util.DecompilerComment;
 import org.benf.cfr.reader.util.MiscConstants;
 import org.benf.cfr.reader.util.bytestream.BaseByteData;
+import org.benf.cfr.reader.util.bytestream.BufferBackedByteData;
 import org.benf.cfr.reader.util.bytestream.ByteData;
 import org.benf.cfr.reader.util.collections.ListFactory;
 import org.benf.cfr.reader.util.collections.MapFactory;
@@ -21,13 +23,19 @@ import org.benf.cfr.reader.util.collections.SetFactory;
 import org.benf.cfr.reader.util.functors.BinaryFunction;
 import org.benf.cfr.reader.util.functors.UnaryFunction;
 import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 
 public class DCCommonState {
@@ -35,40 +43,61 @@ public class DCCommonState {
     private final ClassCache classCache;
     private final ClassFileSource2 classFileSource;
     private final Options options;
+    // Guarded by itself, but only while looking - see getClassFile.
     private final Map<String, ClassFile> classFileCache;
+    // Null unless the cache is limited - guarded by classFileCache.
+    private final BoundedClassFileMap boundedClassFiles;
+    // Guarded by classFileCache.  We don't retry a class which has failed to load.
+    private final Map<String, RuntimeException> classFileFailures = MapFactory.newMap();
+    // Guarded by classFileCache.
+    private final Map<String, ClassFileLoad> classFileLoads = MapFactory.newMap();
+    private final UnaryFunction<String, ClassFile> classFileFactory;
     private Set<JavaTypeInstance> versionCollisions;
     private transient LinkedHashSet<String> couldNotLoadClasses = new LinkedHashSet<String>();
     private final ObfuscationMapping obfuscationMapping;
     private final OverloadMethodSetCache overloadMethodSetCache;
+    private final AnalysisProfile analysisProfile;
+    // Size of the class files loaded through this state - a rough measure of how much it's retaining.
+    private final AtomicLong loadedClassBytes = new AtomicLong();
 
     public DCCommonState(Options options, ClassFileSource2 classFileSource) {
+        this(options, classFileSource, null);
+    }
+
+    public DCCommonState(Options options, ClassFileSource2 classFileSource, AnalysisProfile analysisProfile) {
         this.options = options;
         this.classFileSource = classFileSource;
         this.classCache = new ClassCache(this);
-        this.classFileCache = MapFactory.newExceptionRetainingLazyMap(new UnaryFunction<String, ClassFile>() {
+        this.overloadMethodSetCache = new OverloadMethodSetCache();
+        this.boundedClassFiles = newBoundedClassFiles(this.options, this.overloadMethodSetCache);
+        this.classFileCache = newClassFileCache(boundedClassFiles);
+        this.classFileFactory = new UnaryFunction<String, ClassFile>() {
             @Override
             public ClassFile invoke(String arg) {
                 return loadClassFileAtPath(arg);
             }
-        });
+        };
         this.versionCollisions = SetFactory.newSet();
         this.obfuscationMapping = NullMapping.INSTANCE;
-        this.overloadMethodSetCache = new OverloadMethodSetCache();
+        this.analysisProfile = analysisProfile;
     }
 
     public DCCommonState(DCCommonState dcCommonState, final BinaryFunction<String, DCCommonState, ClassFile> cacheAccess) {
         this.options = dcCommonState.options;
         this.classFileSource = dcCommonState.classFileSource;
         this.classCache = new ClassCache(this);
-        this.classFileCache = MapFactory.newExceptionRetainingLazyMap(new UnaryFunction<String, ClassFile>() {
+        this.overloadMethodSetCache = dcCommonState.overloadMethodSetCache;
+        this.boundedClassFiles = newBoundedClassFiles(this.options, this.overloadMethodSetCache);
+        this.classFileCache = newClassFileCache(boundedClassFiles);
+        this.classFileFactory = new UnaryFunction<String, ClassFile>() {
             @Override
             public ClassFile invoke(String arg) {
                 return cacheAccess.invoke(arg, DCCommonState.this);
             }
-        });
+        };
         this.versionCollisions = dcCommonState.versionCollisions;
         this.obfuscationMapping = dcCommonState.obfuscationMapping;
-        this.overloadMethodSetCache = dcCommonState.overloadMethodSetCache;
+        this.analysisProfile = dcCommonState.analysisProfile;
     }
 
     // TODO : If we have any more of these, refactor to a builder!
@@ -76,21 +105,42 @@ public class DCCommonState {
         this.options = dcCommonState.options;
         this.classFileSource = dcCommonState.classFileSource;
         this.classCache = new ClassCache(this);
-        this.classFileCache = MapFactory.newExceptionRetainingLazyMap(new UnaryFunction<String, ClassFile>() {
+        this.overloadMethodSetCache = dcCommonState.overloadMethodSetCache;
+        this.boundedClassFiles = newBoundedClassFiles(this.options, this.overloadMethodSetCache);
+        this.classFileCache = newClassFileCache(boundedClassFiles);
+        this.classFileFactory = new UnaryFunction<String, ClassFile>() {
             @Override
             public ClassFile invoke(String arg) {
                 return loadClassFileAtPath(arg);
             }
-        });
+        };
         this.versionCollisions = dcCommonState.versionCollisions;
         this.obfuscationMapping = mapping;
-        this.overloadMethodSetCache = dcCommonState.overloadMethodSetCache;
+        this.analysisProfile = dcCommonState.analysisProfile;
+    }
+
+    private static BoundedClassFileMap newBoundedClassFiles(Options options, OverloadMethodSetCache overloadMethodSetCache) {
+        int limit = options.getOption(OptionsImpl.CLASS_CACHE_LIMIT);
+        if (limit <= 0) return null;
+        return new BoundedClassFileMap(limit * 1024L * 1024L, overloadMethodSetCache);
+    }
+
+    private static Map<String, ClassFile> newClassFileCache(BoundedClassFileMap bounded) {
+        if (bounded == null) return MapFactory.newMap();
+        return bounded;
     }
 
     public void setCollisions(Set<JavaTypeInstance> versionCollisions) {
         this.versionCollisions = versionCollisions;
     }
 
+    /*
+     * Null unless timings have been requested.
+     */
+    public AnalysisProfile getAnalysisProfile() {
+        return analysisProfile;
+    }
+
     public Set<JavaTypeInstance> getVersionCollisions() {
         return versionCollisions;
     }
@@ -110,15 +160,55 @@ public class DCCommonState {
 
     public ClassFile loadClassFileAtPath(final String path) {
         try {
-            Pair<byte[], String> content = classFileSource.getClassFileContent(path);
-            ByteData data = new BaseByteData(content.getFirst());
-            return new ClassFile(data, content.getSecond(), this);
+            ClassFile classFile;
+            if (classFileSource instanceof ClassFileBufferSource) {
+                Pair<ByteBuffer, String> content = ((ClassFileBufferSource) classFileSource).getClassFileBuffer(path);
+                loadedClassBytes.addAndGet(content.getFirst().remaining());
+                ByteData data = new BufferBackedByteData(content.getFirst());
+                classFile = new ClassFile(data, content.getSecond(), this);
+            } else {
+                Pair<byte[], String> content = classFileSource.getClassFileContent(path);
+                loadedClassBytes.addAndGet(content.getFirst().length);
+                ByteData data = new BaseByteData(content.getFirst());
+                classFile = new ClassFile(data, content.getSecond(), this);
+            }
+            if (classFileSource instanceof ClassFilePrefetcher) {
+                ((ClassFilePrefetcher) classFileSource).prefetch(getNotLoaded(classFile.getReferencedClassFilePaths()));
+            }
+            return classFile;
         } catch (Exception e) {
-            couldNotLoadClasses.add(path);
+            synchronized (couldNotLoadClasses) {
+                couldNotLoadClasses.add(path);
+            }
             throw new CannotLoadClassException(path, e);
         }
     }
 
+    /*
+     * Anything we've already loaded, (or failed to), won't be asked for again - so isn't worth prefetching.
+     */
+    private List<String> getNotLoaded(Collection<String> paths) {
+        List<String> res = ListFactory.newList();
+        synchronized (classFileCache) {
+            for (String path : paths) {
+                if (!classFileCache.containsKey(path) && !classFileLoads.containsKey(path) && !classFileFailures.containsKey(path)) {
+                    res.add(path);
+                }
+            }
+        }
+        synchronized (couldNotLoadClasses) {
+            res.removeAll(couldNotLoadClasses);
+        }
+        return res;
+    }
+
+    /*
+     * The raw content of a class, by name - this bypasses (and doesn't populate) the class file cache.
+     */
+    public byte[] getRawClassFileContent(String rawName) throws IOException {
+        return classFileSource.getClassFileContent(ClassNameUtils.convertToPath(rawName) + ".class").getFirst();
+    }
+
     public DecompilerComment renamedTypeComment(String typeName) {
         String originalName = classCache.getOriginalName(typeName);
         if (originalName != null) {
@@ -127,8 +217,8 @@ public class DCCommonState {
         return null;
     }
 
-    private static boolean isMultiReleaseJar(JarContent jarContent) {
-        String val = jarContent.getManifestEntries().get(MiscConstants.MULTI_RELEASE_KEY);
+    private static boolean isMultiReleaseJar(Map<String, String> manifestEntries) {
+        String val = manifestEntries.get(MiscConstants.MULTI_RELEASE_KEY);
         if (val == null) return false;
         return Boolean.parseBoolean(val);
     }
@@ -137,46 +227,159 @@ public class DCCommonState {
         JarContent jarContent = classFileSource.addJarContent(path, type);
 
         TreeMap<Integer, List<JavaTypeInstance>> baseRes = MapFactory.newTreeMap();
-        Map<Integer, List<JavaTypeInstance>> res = MapFactory.newLazyMap(baseRes, new UnaryFunction<Integer, List<JavaTypeInstance>>() {
+        Map<Integer, List<JavaTypeInstance>> res = newVersionMap(baseRes);
+        boolean isMultiReleaseJar = isMultiReleaseJar(jarContent.getManifestEntries());
+
+        for (String classPath : jarContent.getClassFiles()) {
+            addJarType(res, classPath, isMultiReleaseJar);
+        }
+        return baseRes;
+    }
+
+    /*
+     * As explicitlyLoadJar, but types are available as the jar is read.  Returns null if the class file source
+     * can't stream, in which case nothing has been loaded.
+     */
+    public JarTypeStream streamJar(String path, AnalysisType type) {
+        if (!(classFileSource instanceof StreamingJarSource)) return null;
+        JarStream stream = ((StreamingJarSource) classFileSource).streamJarContent(path, type);
+        if (stream == null) return null;
+        return new JarTypeStream(this, stream, isMultiReleaseJar(stream.getManifestEntries()));
+    }
+
+    static Map<Integer, List<JavaTypeInstance>> newVersionMap(TreeMap<Integer, List<JavaTypeInstance>> baseRes) {
+        return MapFactory.newLazyMap(baseRes, new UnaryFunction<Integer, List<JavaTypeInstance>>() {
             @Override
             public List<JavaTypeInstance> invoke(Integer arg) {
                 return ListFactory.newList();
             }
         });
-        boolean isMultiReleaseJar = isMultiReleaseJar(jarContent);
+    }
 
-        for (String classPath : jarContent.getClassFiles()) {
-            // If the classPath is from a multi release jar, then we're going
-            // to have to process it in a more unpleasant way.
-            int version = 0;
-            if (isMultiReleaseJar) {
-                Matcher matcher = MiscConstants.MULTI_RELEASE_PATH_PATTERN.matcher(classPath);
-                // It's kind of irritating that we're reprocessing each name, rather than
-                // determining this in a tree structured walk through the source jar.
-                if (matcher.matches()) {
-                    try {
-                        String ver = matcher.group(1);
-                        version = Integer.parseInt(ver);
-                        classPath = matcher.group(2);
-                    } catch (Exception e) {
-                        // This is unfortunate - someone's playing silly buggers!
-                        // Ignore this file - it won't get seen by jre.
-                        // (should also be impossible to get here given regex).
-                        continue;
-                    }
+    void addJarType(Map<Integer, List<JavaTypeInstance>> res, String classPath, boolean isMultiReleaseJar) {
+        // If the classPath is from a multi release jar, then we're going
+        // to have to process it in a more unpleasant way.
+        int version = 0;
+        if (isMultiReleaseJar) {
+            Matcher matcher = MiscConstants.MULTI_RELEASE_PATH_PATTERN.matcher(classPath);
+            // It's kind of irritating that we're reprocessing each name, rather than
+            // determining this in a tree structured walk through the source jar.
+            if (matcher.matches()) {
+                try {
+                    String ver = matcher.group(1);
+                    version = Integer.parseInt(ver);
+                    classPath = matcher.group(2);
+                } catch (Exception e) {
+                    // This is unfortunate - someone's playing silly buggers!
+                    // Ignore this file - it won't get seen by jre.
+                    // (should also be impossible to get here given regex).
+                    return;
                 }
             }
+        }
 
-            // Redundant test as we're defending against a bad implementation.
-            if (classPath.toLowerCase().endsWith(".class")) {
-                res.get(version).add(classCache.getRefClassFor(classPath.substring(0, classPath.length() - 6)));
-            }
+        JavaTypeInstance jarType = getJarType(classPath);
+        if (jarType != null) {
+            res.get(version).add(jarType);
         }
-        return baseRes;
+    }
+
+    JavaTypeInstance getJarType(String classPath) {
+        // Redundant test as we're defending against a bad implementation.
+        if (!classPath.toLowerCase().endsWith(".class")) return null;
+        return classCache.getRefClassFor(classPath.substring(0, classPath.length() - 6));
     }
 
     public ClassFile getClassFile(String path) throws CannotLoadClassException {
-        return classFileCache.get(path);
+        /*
+         * Classes in a jar may be analysed concurrently (see OptionsImpl.ANALYSIS_THREADS).  The lock only covers
+         * looking in the cache - reading and parsing a class happens outside it, so one thread's I/O (or wait for a
+         * streamed jar) doesn't hold up everyone else's supertype lookups.  Anyone else after the same class waits
+         * for the thread loading it.  Loading a class never loads another, so this can't deadlock.
+         */
+        ClassFileLoad load;
+        boolean loading;
+        synchronized (classFileCache) {
+            ClassFile res = classFileCache.get(path);
+            if (res != null) return res;
+            RuntimeException failure = classFileFailures.get(path);
+            if (failure != null) throw failure;
+            load = classFileLoads.get(path);
+            loading = load == null;
+            if (loading) {
+                load = new ClassFileLoad();
+                classFileLoads.put(path, load);
+            }
+        }
+        if (!loading) return load.await(path);
+
+        ClassFile res = null;
+        RuntimeException failure = null;
+        try {
+            res = classFileFactory.invoke(path);
+            return res;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            synchronized (classFileCache) {
+                classFileLoads.remove(path);
+                if (res != null) {
+                    classFileCache.put(path, res);
+                } else if (failure != null) {
+                    classFileFailures.put(path, failure);
+                }
+            }
+            load.finish(res, failure);
+        }
+    }
+
+    public long getLoadedClassBytes() {
+        return loadedClassBytes.get();
+    }
+
+    /*
+     * Analysis changes a class, (and its inner classes) - if this state is being kept, (see CfrSession), they have
+     * to be reloaded before they can be analysed again.
+     *
+     * Scala abuses '$', so we may throw away more than we need to - that's harmless.
+     */
+    public void forgetAnalysedClass(ClassFile classFile) {
+        String path = ClassNameUtils.convertToPath(classFile.getClassType().getRawName());
+        String innerPrefix = path + MiscConstants.INNER_CLASS_SEP_STR;
+        path = path + ".class";
+        synchronized (classFileCache) {
+            List<String> forget = ListFactory.newList();
+            for (String key : classFileCache.keySet()) {
+                if (key.equals(path) || key.startsWith(innerPrefix)) forget.add(key);
+            }
+            // Not through the iterator, so a bounded cache sees what's removed.
+            for (String key : forget) {
+                classFileCache.remove(key);
+            }
+        }
+    }
+
+    /*
+     * If the class file cache is limited, (see OptionsImpl.CLASS_CACHE_LIMIT), a class and its inner classes
+     * mustn't be discarded from when it's loaded for analysis until it's been dumped.
+     *
+     * Every pin must be matched by an unpin.
+     */
+    public void pinClass(JavaTypeInstance type) {
+        if (boundedClassFiles == null) return;
+        String basePath = ClassNameUtils.convertToPath(type.getRawName());
+        synchronized (classFileCache) {
+            boundedClassFiles.pin(basePath);
+        }
+    }
+
+    public void unpinClass(JavaTypeInstance type) {
+        if (boundedClassFiles == null) return;
+        String basePath = ClassNameUtils.convertToPath(type.getRawName());
+        synchronized (classFileCache) {
+            boundedClassFiles.unpin(basePath);
+        }
     }
 
     public JavaRefTypeInstance getClassTypeOrNull(String path) {
@@ -232,6 +435,38 @@ public class DCCommonState {
         return AnalysisType.CLASS;
     }
 
+    /*
+     * A class file which is being loaded by one thread, which others wanting it wait for.
+     */
+    private static class ClassFileLoad {
+        private final Thread loader = Thread.currentThread();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private ClassFile classFile;
+        private RuntimeException failure;
+
+        void finish(ClassFile classFile, RuntimeException failure) {
+            this.classFile = classFile;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        ClassFile await(String path) {
+            if (loader == Thread.currentThread()) {
+                throw new CannotLoadClassException(path, new IllegalStateException("Recursive load"));
+            }
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotLoadClassException(path, e);
+            }
+            if (failure != null) throw failure;
+            // The loader failed with something other than an exception - it's up to them to report that.
+            if (classFile == null) throw new CannotLoadClassException(path, null);
+            return classFile;
+        }
+    }
+
     public ObfuscationMapping getObfuscationMapping() {
         return obfuscationMapping;
     }
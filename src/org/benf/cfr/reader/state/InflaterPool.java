@@ -0,0 +1,67 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.ListFactory;
+
+import java.util.List;
+import java.util.zip.Inflater;
+
+/*
+ * Inflaters, each with somewhere to put compressed data, (Inflater only takes arrays), for inflating entries straight
+ * from a mapped jar (see ZipBufferIndex.getContent) - so reading a class allocates nothing but its content.
+ *
+ * An Inflater holds native memory until it's ended, so the pool belongs to a ClassFileSourceImpl, and is emptied
+ * when that's closed, (eg once a jar has been analysed).  Only a bounded number are kept, and an input buffer which
+ * has grown for an unusually large entry isn't kept at that size.
+ */
+class InflaterPool {
+    private static final int MAX_POOLED = 16;
+    private static final int INPUT_SIZE = 16 * 1024;
+    private static final int MAX_RETAINED_INPUT = 256 * 1024;
+
+    private final List<Inflating> pooled = ListFactory.newList();
+
+    static class Inflating {
+        private final Inflater inflater = new Inflater(true);
+        private byte[] input = new byte[INPUT_SIZE];
+
+        Inflater getInflater() {
+            return inflater;
+        }
+
+        byte[] getInput(int size) {
+            if (input.length < size) input = new byte[Math.max(size, input.length * 2)];
+            return input;
+        }
+    }
+
+    /*
+     * Every acquire must be paired with a release.
+     */
+    synchronized Inflating acquire() {
+        if (pooled.isEmpty()) return new Inflating();
+        return pooled.remove(pooled.size() - 1);
+    }
+
+    void release(Inflating inflating) {
+        inflating.inflater.reset();
+        if (inflating.input.length > MAX_RETAINED_INPUT) inflating.input = new byte[INPUT_SIZE];
+        synchronized (this) {
+            if (pooled.size() < MAX_POOLED) {
+                pooled.add(inflating);
+                return;
+            }
+        }
+        inflating.inflater.end();
+    }
+
+    /*
+     * Ends everything pooled - the pool remains usable.  (Anything acquired at the time is pooled again when
+     * released.)
+     */
+    synchronized void close() {
+        for (Inflating inflating : pooled) {
+            inflating.inflater.end();
+        }
+        pooled.clear();
+    }
+}
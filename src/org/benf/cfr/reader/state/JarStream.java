@@ -0,0 +1,76 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.ConfusedCFRException;
+
+import java.util.LinkedList;
+import java.util.Map;
+
+/*
+ * Class file paths in a jar, handed over as the jar's directory is walked on another thread.
+ *
+ * The walk stays at most CAPACITY paths ahead of the consumer - unless something is waiting for the walk to reach
+ * a class, (see ClassFileSourceImpl.awaitStreamed), which may be the consumer itself, so the walk mustn't wait then.
+ */
+class JarStream {
+    private static final int CAPACITY = 1024;
+
+    private final Map<String, String> manifestEntries;
+    private final LinkedList<String> queue = new LinkedList<String>();
+    private int unbounded;
+    private boolean finished;
+    private RuntimeException failure;
+    private boolean ended;
+
+    JarStream(Map<String, String> manifestEntries) {
+        this.manifestEntries = manifestEntries;
+    }
+
+    Map<String, String> getManifestEntries() {
+        return manifestEntries;
+    }
+
+    synchronized void add(String classPath) throws InterruptedException {
+        while (queue.size() >= CAPACITY && unbounded == 0) {
+            wait();
+        }
+        queue.add(classPath);
+        notifyAll();
+    }
+
+    synchronized void finish(RuntimeException failure) {
+        this.failure = failure;
+        finished = true;
+        notifyAll();
+    }
+
+    /*
+     * Calls must be paired with setBounded(true).
+     */
+    synchronized void setBounded(boolean bounded) {
+        unbounded += bounded ? -1 : 1;
+        notifyAll();
+    }
+
+    /*
+     * The next class file path, in jar order - or null once they've all been seen.
+     * Only to be called from one thread.
+     */
+    synchronized String next() {
+        if (ended) return null;
+        try {
+            while (queue.isEmpty() && !finished) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfusedCFRException("Interrupted reading jar");
+        }
+        if (!queue.isEmpty()) {
+            notifyAll();
+            return queue.removeFirst();
+        }
+        ended = true;
+        if (failure != null) throw failure;
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.bytecode.analysis.types.JavaTypeInstance;
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/*
+ * The types in a jar which is being read in the background (see DCCommonState.streamJar).
+ *
+ * For an ordinary jar, everything is version 0, so types can be iterated as soon as they're seen.  Versions in
+ * a multi release jar can't be processed until we know which types collide, so those have to be collected first.
+ */
+public class JarTypeStream implements Iterator<JavaTypeInstance> {
+    private final DCCommonState dcCommonState;
+    private final JarStream stream;
+    private final boolean multiRelease;
+    private JavaTypeInstance next;
+
+    JarTypeStream(DCCommonState dcCommonState, JarStream stream, boolean multiRelease) {
+        this.dcCommonState = dcCommonState;
+        this.stream = stream;
+        this.multiRelease = multiRelease;
+    }
+
+    public boolean isMultiRelease() {
+        return multiRelease;
+    }
+
+    /*
+     * Blocks until the next type is seen, or the jar has been completely read.
+     */
+    @Override
+    public boolean hasNext() {
+        if (multiRelease) throw new IllegalStateException("Multi release jar must be read by version");
+        while (next == null) {
+            String classPath = stream.next();
+            if (classPath == null) return false;
+            next = dcCommonState.getJarType(classPath);
+        }
+        return true;
+    }
+
+    @Override
+    public JavaTypeInstance next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        JavaTypeInstance res = next;
+        next = null;
+        return res;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /*
+     * Waits for the whole jar, and groups as DCCommonState.explicitlyLoadJar.
+     */
+    public TreeMap<Integer, List<JavaTypeInstance>> getTypesByVersion() {
+        TreeMap<Integer, List<JavaTypeInstance>> baseRes = MapFactory.newTreeMap();
+        Map<Integer, List<JavaTypeInstance>> res = DCCommonState.newVersionMap(baseRes);
+        String classPath;
+        while ((classPath = stream.next()) != null) {
+            dcCommonState.addJarType(res, classPath, multiRelease);
+        }
+        return baseRes;
+    }
+}
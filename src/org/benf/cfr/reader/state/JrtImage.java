@@ -0,0 +1,134 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Reads class files straight out of a JDK's module image, (lib/modules), through the jrt file system - rather than
+ * opening a URL per class, or worse, loading the class to find out where it lives.
+ *
+ * Packages are mapped to modules as we need them, from the image's own /packages directory, so this works just as
+ * well for a JDK other than the one we're running on (see OptionsImpl.JDK_HOME).
+ *
+ * We're built for java 6, so the file system is only reachable by reflection.
+ */
+class JrtImage {
+    private static final String[] NO_MORE = new String[0];
+
+    private final Object fileSystem;
+    // If we opened the file system, (rather than using the running JDK's), we have to close it.
+    private final boolean owned;
+    private final Method getPath;
+    private final Method readAllBytes;
+    private final Method newDirectoryStream;
+    private final Method getFileName;
+    // Guarded by itself.
+    private final Map<String, List<String>> packageModules = MapFactory.newMap();
+
+    private JrtImage(Object fileSystem, boolean owned) throws ClassNotFoundException, NoSuchMethodException {
+        this.fileSystem = fileSystem;
+        this.owned = owned;
+        Class<?> fileSystemClass = Class.forName("java.nio.file.FileSystem");
+        Class<?> pathClass = Class.forName("java.nio.file.Path");
+        Class<?> filesClass = Class.forName("java.nio.file.Files");
+        this.getPath = fileSystemClass.getMethod("getPath", String.class, String[].class);
+        this.readAllBytes = filesClass.getMethod("readAllBytes", pathClass);
+        this.newDirectoryStream = filesClass.getMethod("newDirectoryStream", pathClass);
+        this.getFileName = pathClass.getMethod("getFileName");
+    }
+
+    /*
+     * The image of the JDK at javaHome, or of the running JDK if that's null.
+     * Null if it can't be opened, (eg we're running on java 8, or that isn't a 9+ JDK).
+     */
+    static JrtImage open(String javaHome) {
+        try {
+            Class<?> fileSystemsClass = Class.forName("java.nio.file.FileSystems");
+            URI uri = URI.create("jrt:/");
+            if (javaHome == null) {
+                Object fileSystem = fileSystemsClass.getMethod("getFileSystem", URI.class).invoke(null, uri);
+                return new JrtImage(fileSystem, false);
+            }
+            Map<String, String> env = Collections.singletonMap("java.home", javaHome);
+            Object fileSystem = fileSystemsClass.getMethod("newFileSystem", URI.class, Map.class).invoke(null, uri, env);
+            return new JrtImage(fileSystem, true);
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /*
+     * Null if it's not in the image.
+     */
+    byte[] getContent(String path) {
+        int idx = path.lastIndexOf('/');
+        if (idx < 0) return null;
+        String packageName = path.substring(0, idx).replace('/', '.');
+        for (String module : getModules(packageName)) {
+            try {
+                return (byte[]) readAllBytes.invoke(null, getPath.invoke(fileSystem, "/modules/" + module + "/" + path, NO_MORE));
+            } catch (InvocationTargetException e) {
+                // Not in this module.
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * /packages/<package> has an entry for each module which contains it.
+     */
+    private List<String> getModules(String packageName) {
+        synchronized (packageModules) {
+            List<String> res = packageModules.get(packageName);
+            if (res == null) {
+                res = listModules(packageName);
+                packageModules.put(packageName, res);
+            }
+            return res;
+        }
+    }
+
+    private List<String> listModules(String packageName) {
+        List<String> res = ListFactory.newList();
+        try {
+            Object dir = getPath.invoke(fileSystem, "/packages/" + packageName, NO_MORE);
+            Object stream = newDirectoryStream.invoke(null, dir);
+            try {
+                for (Object module : (Iterable<?>) stream) {
+                    res.add(getFileName.invoke(module).toString());
+                }
+            } finally {
+                ((Closeable) stream).close();
+            }
+        } catch (InvocationTargetException e) {
+            // No such package.
+        } catch (IllegalAccessException e) {
+            // Can't happen - these are public.
+        } catch (IOException e) {
+            // Nothing to be done.
+        }
+        return res;
+    }
+
+    void close() {
+        if (!owned) return;
+        try {
+            ((Closeable) fileSystem).close();
+        } catch (IOException e) {
+            // Nothing to be done.
+        }
+    }
+}
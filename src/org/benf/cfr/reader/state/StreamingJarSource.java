@@ -0,0 +1,18 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.AnalysisType;
+
+/*
+ * Optionally implemented by class file sources which can add a jar's classes as its directory is read, rather
+ * than listing the whole jar before returning (see OptionsImpl.STREAM_JAR).
+ *
+ * Until the walk is complete, lookups of classes which the source hasn't yet seen must wait for it, so that
+ * the result is the same as if the jar had been added up front.
+ */
+interface StreamingJarSource {
+    /*
+     * Returns null if this jar can't be streamed - in which case nothing has been added, and the caller should
+     * use addJarContent.
+     */
+    JarStream streamJarContent(String jarPath, AnalysisType analysisType);
+}
@@ -0,0 +1,270 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * A minimal reader for the central directory of a zip held in a ByteBuffer (usually a mapped jar).
+ *
+ * java.util.zip.ZipFile won't tell us where an entry's data lives, so can't give us a view of it - for STORED
+ * entries we can hand out a slice of the buffer without copying or inflating anything.  It also can't read a zip
+ * which isn't a file - such as a jar nested (stored) inside another.
+ *
+ * This deliberately doesn't understand zip64 or multi-disk archives - if we see those, we give up and the caller
+ * should fall back to ZipFile.
+ */
+class ZipBufferIndex {
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int EOCD_LEN = 22;
+    private static final int CEN_LEN = 46;
+    private static final int LOC_LEN = 30;
+    private static final int MAX_COMMENT = 0xffff;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final Map<String, Entry> entries;
+
+    static class Entry {
+        private final String name;
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private final int localHeaderOffset;
+
+        private Entry(String name, int method, int compressedSize, int size, int localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getMethod() {
+            return method;
+        }
+
+        int getCompressedSize() {
+            return compressedSize;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private ZipBufferIndex(ByteBuffer buffer, Map<String, Entry> entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /*
+     * Returns null if the file can't be mapped, or isn't a zip we understand.
+     */
+    static ZipBufferIndex map(File file) {
+        ByteBuffer buffer = mapFile(file);
+        return buffer == null ? null : create(buffer);
+    }
+
+    static ByteBuffer mapFile(File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) return null;
+                // The mapping remains valid after the channel is closed.
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static ZipBufferIndex create(ByteBuffer buffer) {
+        Walk walk = walk(buffer, MapFactory.<String, Entry>newOrderedMap());
+        if (walk == null) return null;
+        while (walk.next() != null) {
+        }
+        return walk.isCorrupt() ? null : walk.getIndex();
+    }
+
+    /*
+     * Reads the central directory an entry at a time.  Entries are in the walk's index as soon as they've been
+     * read, so a caller can start on a jar's content before the rest of its directory has been paged in.
+     *
+     * Null if this isn't a zip we understand.
+     */
+    static Walk walk(ByteBuffer buffer, Map<String, Entry> entries) {
+        buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = findEndOfCentralDirectory(buffer);
+        if (eocd < 0) return null;
+        // Multi disk?  Not having that.
+        if (buffer.getShort(eocd + 4) != 0 || buffer.getShort(eocd + 6) != 0) return null;
+        int count = buffer.getShort(eocd + 10) & 0xffff;
+        long cenSize = buffer.getInt(eocd + 12) & 0xffffffffL;
+        long cenOffset = buffer.getInt(eocd + 16) & 0xffffffffL;
+        // zip64 marker values.
+        if (count == 0xffff || cenSize == 0xffffffffL || cenOffset == 0xffffffffL) return null;
+        if (cenOffset + cenSize > eocd) return null;
+        return new Walk(new ZipBufferIndex(buffer, entries), (int) cenOffset, (int) (cenOffset + cenSize));
+    }
+
+    static class Walk {
+        private final ZipBufferIndex index;
+        private final int end;
+        private int pos;
+        private byte[] nameBytes = new byte[256];
+        private boolean corrupt;
+
+        private Walk(ZipBufferIndex index, int pos, int end) {
+            this.index = index;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        /*
+         * Null once we've seen every entry, or something we don't understand, (see isCorrupt).
+         */
+        Entry next() {
+            if (corrupt || pos + CEN_LEN > end) return null;
+            ByteBuffer buffer = index.buffer;
+            if (buffer.getInt(pos) != CEN_SIG) {
+                corrupt = true;
+                return null;
+            }
+            int method = buffer.getShort(pos + 10) & 0xffff;
+            long compressedSize = buffer.getInt(pos + 20) & 0xffffffffL;
+            long size = buffer.getInt(pos + 24) & 0xffffffffL;
+            int nameLen = buffer.getShort(pos + 28) & 0xffff;
+            int extraLen = buffer.getShort(pos + 30) & 0xffff;
+            int commentLen = buffer.getShort(pos + 32) & 0xffff;
+            long localHeaderOffset = buffer.getInt(pos + 42) & 0xffffffffL;
+            if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+                corrupt = true;
+                return null;
+            }
+            if (nameLen > nameBytes.length) nameBytes = new byte[nameLen];
+            ByteBuffer nameBuf = buffer.duplicate();
+            nameBuf.position(pos + CEN_LEN);
+            nameBuf.get(nameBytes, 0, nameLen);
+            // Strictly, names without the utf8 flag are cp437 - but java.util.zip treats them as utf8 too.
+            String name = new String(nameBytes, 0, nameLen, UTF8);
+            Entry entry = new Entry(name, method, (int) compressedSize, (int) size, (int) localHeaderOffset);
+            index.entries.put(name, entry);
+            pos += CEN_LEN + nameLen + extraLen + commentLen;
+            return entry;
+        }
+
+        boolean isCorrupt() {
+            return corrupt;
+        }
+
+        ZipBufferIndex getIndex() {
+            return index;
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int min = Math.max(0, limit - EOCD_LEN - MAX_COMMENT);
+        for (int pos = limit - EOCD_LEN; pos >= min; --pos) {
+            if (buffer.getInt(pos) == EOCD_SIG) return pos;
+        }
+        return -1;
+    }
+
+    Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /*
+     * A view of the (possibly compressed) data for this entry, or null if the local header is nonsense.
+     */
+    ByteBuffer getRawData(Entry entry) {
+        int loc = entry.localHeaderOffset;
+        if (loc + LOC_LEN > buffer.limit() || buffer.getInt(loc) != LOC_SIG) return null;
+        int nameLen = buffer.getShort(loc + 26) & 0xffff;
+        int extraLen = buffer.getShort(loc + 28) & 0xffff;
+        int start = loc + LOC_LEN + nameLen + extraLen;
+        int end = start + entry.compressedSize;
+        if (end > buffer.limit()) return null;
+        ByteBuffer res = buffer.duplicate();
+        res.position(start);
+        res.limit(end);
+        return res.slice();
+    }
+
+    /*
+     * Content of an entry - a view of the buffer if it's stored, otherwise inflated onto the heap.
+     * Null if it's missing, or stored in a way we don't understand.
+     */
+    ByteBuffer getContent(String name, InflaterPool inflaters) {
+        Entry entry = entries.get(name);
+        if (entry == null) return null;
+        switch (entry.method) {
+            case METHOD_STORED:
+                return entry.size == entry.compressedSize ? getRawData(entry) : null;
+            case METHOD_DEFLATED: {
+                ByteBuffer raw = getRawData(entry);
+                return raw == null ? null : inflate(raw, entry.size, inflaters);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer raw, int size, InflaterPool inflaters) {
+        InflaterPool.Inflating state = inflaters.acquire();
+        try {
+            int rawSize = raw.remaining();
+            // Without the zlib wrapper, the inflater may want a byte beyond the end of the data.
+            byte[] input = state.getInput(rawSize + 1);
+            raw.duplicate().get(input, 0, rawSize);
+            input[rawSize] = 0;
+            byte[] output = new byte[size];
+            Inflater inflater = state.getInflater();
+            inflater.setInput(input, 0, rawSize + 1);
+            int done = 0;
+            while (done < size) {
+                int count = inflater.inflate(output, done, size - done);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                done += count;
+            }
+            return done == size ? ByteBuffer.wrap(output) : null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflaters.release(state);
+        }
+    }
+}
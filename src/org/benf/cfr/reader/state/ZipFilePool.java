@@ -0,0 +1,126 @@
+package org.benf.cfr.reader.state;
+
+import org.benf.cfr.reader.util.collections.MapFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/*
+ * Opening a ZipFile means re-reading the central directory, which is very expensive if we do it for every class
+ * we load from a (large) jar.  Keep a bounded number of handles open, keyed by jar path, least recently used
+ * first out.
+ *
+ * Handles are reference counted, so one which is evicted while another thread is reading from it is only closed
+ * once that thread has released it.
+ */
+class ZipFilePool {
+    private static final int DEFAULT_MAX_OPEN = 32;
+
+    private final int maxOpen;
+    private final LinkedHashMap<String, Handle> open = new LinkedHashMap<String, Handle>(16, 0.75f, true);
+    private final Map<ZipFile, Handle> byZipFile = MapFactory.newIdentityMap();
+
+    ZipFilePool() {
+        this(DEFAULT_MAX_OPEN);
+    }
+
+    ZipFilePool(int maxOpen) {
+        this.maxOpen = Math.max(1, maxOpen);
+    }
+
+    private static class Handle {
+        private final ZipFile zipFile;
+        private int users;
+        private boolean evicted;
+
+        private Handle(ZipFile zipFile) {
+            this.zipFile = zipFile;
+        }
+    }
+
+    /*
+     * Every successful acquire must be paired with a release.
+     */
+    ZipFile acquire(String path) throws IOException {
+        synchronized (this) {
+            Handle handle = open.get(path);
+            if (handle != null) {
+                handle.users++;
+                return handle.zipFile;
+            }
+        }
+        // Don't hold the lock while opening - this is the slow bit.
+        ZipFile zipFile = new ZipFile(new File(path), ZipFile.OPEN_READ);
+        synchronized (this) {
+            Handle handle = new Handle(zipFile);
+            handle.users++;
+            byZipFile.put(zipFile, handle);
+            if (open.containsKey(path)) {
+                // Somebody beat us to it - this one is private, and will be closed on release.
+                handle.evicted = true;
+            } else {
+                open.put(path, handle);
+                evictExcess();
+            }
+            return zipFile;
+        }
+    }
+
+    void release(ZipFile zipFile) {
+        Handle handle;
+        synchronized (this) {
+            handle = byZipFile.get(zipFile);
+            if (handle == null) return;
+            if (--handle.users > 0 || !handle.evicted) return;
+            byZipFile.remove(zipFile);
+        }
+        closeQuietly(handle.zipFile);
+    }
+
+    private void evictExcess() {
+        Iterator<Handle> iterator = open.values().iterator();
+        while (open.size() > maxOpen && iterator.hasNext()) {
+            Handle handle = iterator.next();
+            iterator.remove();
+            evict(handle);
+        }
+    }
+
+    private void evict(Handle handle) {
+        handle.evicted = true;
+        if (handle.users == 0) {
+            byZipFile.remove(handle.zipFile);
+            closeQuietly(handle.zipFile);
+        }
+    }
+
+    /*
+     * As close, but just for one jar - eg because it's changed.
+     */
+    synchronized void close(String path) {
+        Handle handle = open.remove(path);
+        if (handle != null) evict(handle);
+    }
+
+    /*
+     * Close everything which isn't currently in use - anything which is will be closed on release.
+     * The pool may continue to be used afterwards.
+     */
+    synchronized void close() {
+        for (Handle handle : open.values()) {
+            evict(handle);
+        }
+        open.clear();
+    }
+
+    private static void closeQuietly(ZipFile zipFile) {
+        try {
+            zipFile.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
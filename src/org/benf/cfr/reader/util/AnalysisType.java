@@ -4,6 +4,10 @@ public enum AnalysisType {
     DETECT,
     JAR,
     WAR,
+    // Spring Boot style - classes in BOOT-INF/classes, and libraries as nested jars in BOOT-INF/lib.
+    BOOTJAR,
+    // A directory tree of class files, treated as an exploded jar.
+    DIRECTORY,
     CLASS
 }
 
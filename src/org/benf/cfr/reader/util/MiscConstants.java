@@ -29,5 +29,10 @@ public interface MiscConstants {
     String MULTI_RELEASE_KEY = "Multi-Release";
     String MULTI_RELEASE_PREFIX = "META-INF/versions/";
     String WAR_PREFIX = "WEB-INF/classes/";
+    String BOOT_CLASSES_PREFIX = "BOOT-INF/classes/";
+    String BOOT_LIB_PREFIX = "BOOT-INF/lib/";
+    // Relative to a JDK home.
+    String JDK_MODULES_IMAGE = "lib/modules";
+    String[] JDK_RUNTIME_JARS = new String[]{"jre/lib/rt.jar", "lib/rt.jar"};
     Pattern MULTI_RELEASE_PATH_PATTERN = Pattern.compile("^" + MULTI_RELEASE_PREFIX + "(\\d+)/(.*)$");
 }
@@ -0,0 +1,91 @@
+package org.benf.cfr.reader.util.bytestream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * ByteData over a ByteBuffer - heap or memory mapped.  Unlike the stream backed implementations, reads are done
+ * with the buffer's absolute accessors, so don't allocate.
+ *
+ * The buffer is never repositioned, so may be shared between any number of views.
+ */
+public class BufferBackedByteData implements ByteData {
+    private final ByteBuffer data;
+    private final int offset;
+
+    public BufferBackedByteData(ByteBuffer data) {
+        this(data.slice().order(ByteOrder.BIG_ENDIAN), 0);
+    }
+
+    BufferBackedByteData(ByteBuffer data, long offset) {
+        this.data = data;
+        this.offset = (int) offset;
+    }
+
+    @Override
+    public byte getS1At(long o) {
+        return data.get((int) (offset + o));
+    }
+
+    @Override
+    public short getU1At(long o) {
+        return (short) (data.get((int) (offset + o)) & 0xff);
+    }
+
+    @Override
+    public short getS2At(long o) {
+        return data.getShort((int) (offset + o));
+    }
+
+    @Override
+    public int getU2At(long o) {
+        return data.getShort((int) (offset + o)) & 0xffff;
+    }
+
+    @Override
+    public int getS4At(long o) {
+        return data.getInt((int) (offset + o));
+    }
+
+    @Override
+    public double getDoubleAt(long o) {
+        return data.getDouble((int) (offset + o));
+    }
+
+    @Override
+    public float getFloatAt(long o) {
+        return data.getFloat((int) (offset + o));
+    }
+
+    @Override
+    public long getLongAt(long o) {
+        return data.getLong((int) (offset + o));
+    }
+
+    @Override
+    public byte[] getBytesAt(int count, long o) {
+        return BufferBackedByteData.getBytes(data, (int) (offset + o), count);
+    }
+
+    @Override
+    public ByteData getOffsetData(long o) {
+        return new BufferBackedByteData(data, offset + o);
+    }
+
+    @Override
+    public OffsettingByteData getOffsettingOffsetData(long o) {
+        return new OffsettingBufferBackedByteData(data, offset + o);
+    }
+
+    static byte[] getBytes(ByteBuffer data, int start, int count) {
+        byte[] res = new byte[count];
+        if (data.hasArray()) {
+            System.arraycopy(data.array(), data.arrayOffset() + start, res, 0, count);
+        } else {
+            ByteBuffer tmp = data.duplicate();
+            tmp.position(start);
+            tmp.get(res);
+        }
+        return res;
+    }
+}
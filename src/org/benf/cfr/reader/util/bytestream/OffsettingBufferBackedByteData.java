@@ -0,0 +1,84 @@
+package org.benf.cfr.reader.util.bytestream;
+
+import java.nio.ByteBuffer;
+
+public class OffsettingBufferBackedByteData implements OffsettingByteData {
+    private final ByteBuffer data;
+    private final int originalOffset;
+    private int mutableOffset;
+
+    OffsettingBufferBackedByteData(ByteBuffer data, long offset) {
+        this.data = data;
+        this.originalOffset = (int) offset;
+        this.mutableOffset = 0;
+    }
+
+    @Override
+    public void advance(long offset) {
+        mutableOffset += offset;
+    }
+
+    @Override
+    public long getOffset() {
+        return mutableOffset;
+    }
+
+    private int pos(long o) {
+        return (int) (originalOffset + mutableOffset + o);
+    }
+
+    @Override
+    public byte getS1At(long o) {
+        return data.get(pos(o));
+    }
+
+    @Override
+    public short getU1At(long o) {
+        return (short) (data.get(pos(o)) & 0xff);
+    }
+
+    @Override
+    public short getS2At(long o) {
+        return data.getShort(pos(o));
+    }
+
+    @Override
+    public int getU2At(long o) {
+        return data.getShort(pos(o)) & 0xffff;
+    }
+
+    @Override
+    public int getS4At(long o) {
+        return data.getInt(pos(o));
+    }
+
+    @Override
+    public double getDoubleAt(long o) {
+        return data.getDouble(pos(o));
+    }
+
+    @Override
+    public float getFloatAt(long o) {
+        return data.getFloat(pos(o));
+    }
+
+    @Override
+    public long getLongAt(long o) {
+        return data.getLong(pos(o));
+    }
+
+    @Override
+    public byte[] getBytesAt(int count, long o) {
+        return BufferBackedByteData.getBytes(data, pos(o), count);
+    }
+
+    @Override
+    public ByteData getOffsetData(long o) {
+        return new BufferBackedByteData(data, pos(o));
+    }
+
+    @Override
+    public OffsettingByteData getOffsettingOffsetData(long o) {
+        return new OffsettingBufferBackedByteData(data, pos(o));
+    }
+}
@@ -467,7 +467,7 @@ public class OptionsImpl implements Options {
             "Decompile specifically with recovery options from pass #X. (really only useful for debugging)", true));
     public static final PermittedOptionProvider.Argument<AnalysisType> ANALYSE_AS = register(new PermittedOptionProvider.Argument<AnalysisType>(
             "analyseas", new DefaultNullEnumDecoder<AnalysisType>(AnalysisType.class),
-            "Force file to be analysed as 'jar' or 'class'"));
+            "Force file to be analysed as 'jar' or 'class'.  'BOOTJAR' analyses BOOT-INF/classes of a Spring Boot style jar, resolving library classes from the jars nested in BOOT-INF/lib.  'DIRECTORY' analyses a directory tree as an exploded jar, and is detected for directories if this isn't given."));
     public static final PermittedOptionProvider.Argument<String> JAR_FILTER = register(new PermittedOptionProvider.Argument<String>(
             "jarfilter", defaultNullStringDecoder,
             "Substring regex - analyse only classes where the fqn matches this pattern. (when analysing jar)"));
@@ -513,6 +513,15 @@ public class OptionsImpl implements Options {
     public static final PermittedOptionProvider.Argument<String> EXTRA_CLASS_PATH = register(new PermittedOptionProvider.Argument<String>(
             "extraclasspath", defaultNullStringDecoder,
             "additional class path - classes in this classpath will be used if needed."));
+    public static final PermittedOptionProvider.Argument<String> CLASS_PATH_INDEX = register(new PermittedOptionProvider.Argument<String>(
+            "classpathindex", defaultNullStringDecoder,
+            "File in which to keep an index of the classes in each class path jar.  Jars which haven't changed (by size and modification time) since the index was written aren't re-read."));
+    public static final PermittedOptionProvider.Argument<String> CLASS_STUB_DIR = register(new PermittedOptionProvider.Argument<String>(
+            "stubdir", defaultNullStringDecoder,
+            "Directory in which to keep compact stubs (names, supers, signatures and member prototypes, but no code) of the classes in each class path jar.  Library classes are then read from these rather than the jar.  Stubs are rebuilt if a jar changes (by size and modification time)."));
+    public static final PermittedOptionProvider.Argument<String> JDK_HOME = register(new PermittedOptionProvider.Argument<String>(
+            "jdkhome", defaultNullStringDecoder,
+            "Resolve JDK classes against the JDK (or JRE) at this location, rather than the one CFR is running on."));
     public static final PermittedOptionProvider.Argument<Boolean> PULL_CODE_CASE = register(new PermittedOptionProvider.Argument<Boolean>(
             "pullcodecase", defaultFalseBooleanDecoder,
             "Pull code into case statements agressively"));
@@ -537,6 +546,36 @@ public class OptionsImpl implements Options {
     public static final PermittedOptionProvider.Argument<Boolean> TRACK_BYTECODE_LOC = register(new PermittedOptionProvider.Argument<Boolean>(
             "trackbytecodeloc", defaultFalseBooleanDecoder,
             "Propagate bytecode location info."));
+    public static final PermittedOptionProvider.Argument<Integer> ANALYSIS_THREADS = register(new PermittedOptionProvider.Argument<Integer>(
+            "threads", new DefaultingIntDecoder(1),
+            "Number of threads to use when analysing classes in a jar.  Output order is unaffected.  (experimental)"));
+    public static final PermittedOptionProvider.Argument<Boolean> STREAM_JAR = register(new PermittedOptionProvider.Argument<Boolean>(
+            "streamjar", defaultFalseBooleanDecoder,
+            "Start analysing classes in a jar while its directory is still being read, rather than listing the whole jar first.  Ignored with cachedir, member renaming, or case insensitive class renaming, which need the full listing.  (experimental)"));
+    public static final PermittedOptionProvider.Argument<Boolean> PREFETCH_CLASSES = register(new PermittedOptionProvider.Argument<Boolean>(
+            "prefetch", defaultFalseBooleanDecoder,
+            "Once a class has been loaded, read the classes it refers to in the background, so they're ready when analysis needs them.  (experimental)"));
+    public static final PermittedOptionProvider.Argument<Integer> CLASS_CACHE_LIMIT = register(new PermittedOptionProvider.Argument<Integer>(
+            "classcachemb", default0intDecoder,
+            "Soft limit, in megabytes of class file, on the classes held in memory while decompiling a jar.  Beyond this, classes which were only needed for reference, and haven't been changed by analysis, are discarded (least recently used first) and reloaded if needed again.  0 for no limit."));
+    public static final PermittedOptionProvider.Argument<Integer> METHOD_TIME_LIMIT = register(new PermittedOptionProvider.Argument<Integer>(
+            "methodtimelimit", default0intDecoder,
+            "Milliseconds to spend analysing a single method (including recovery passes) before giving up and showing its bytecode.  0 for no limit."));
+    public static final PermittedOptionProvider.Argument<Integer> METHOD_STEP_LIMIT = register(new PermittedOptionProvider.Argument<Integer>(
+            "methodsteplimit", default0intDecoder,
+            "Number of rewrite steps to allow when analysing a single method before giving up and showing its bytecode.  0 for no limit."));
+    public static final PermittedOptionProvider.Argument<String> CACHE_DIR = register(new PermittedOptionProvider.Argument<String>(
+            "cachedir", defaultNullStringDecoder,
+            "Directory in which to cache decompiled classes from jars, keyed by class content.  Unchanged classes will not be re-analysed.  Note that cached output is emitted as plain text, even to token stream sinks."));
+    public static final PermittedOptionProvider.Argument<Boolean> ANALYSIS_TIMINGS = register(new PermittedOptionProvider.Argument<Boolean>(
+            "analysistimings", defaultFalseBooleanDecoder,
+            "Record time spent in each phase of method analysis, per method and recovery pass.  Written alongside the summary (analysis-timings.csv, analysis-timings-methods.csv, analysis-timings.json)."));
+    public static final PermittedOptionProvider.Argument<Integer> ANALYSIS_TIMINGS_METHODS = register(new PermittedOptionProvider.Argument<Integer>(
+            "analysistimingsmethods", new DefaultingIntDecoder(100),
+            "With analysistimings, how many of the slowest method analysis passes to keep per phase timings for.  Totals always cover every method."));
+    public static final PermittedOptionProvider.Argument<Boolean> ANALYSIS_ALLOCATIONS = register(new PermittedOptionProvider.Argument<Boolean>(
+            "analysisallocations", defaultFalseBooleanDecoder,
+            "With analysistimings, also record bytes allocated in each phase, if the JVM supports it.  This is significantly more expensive."));
 
 
     public OptionsImpl(Map<String, String> opts) {
@@ -1,15 +1,14 @@
 package org.benf.cfr.reader.util.graph;
 
-import org.benf.cfr.reader.util.collections.ListFactory;
 import org.benf.cfr.reader.util.collections.SetFactory;
 import org.benf.cfr.reader.util.functors.BinaryProcedure;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.Set;
 
 public abstract class AbstractGraphVisitorFI<T> implements GraphVisitor<T> {
-    private final LinkedList<T> toVisit = ListFactory.newLinkedList();
+    private final ArrayDeque<T> toVisit = new ArrayDeque<T>();
     private final Set<T> visited = SetFactory.newSet();
     private final BinaryProcedure<T, GraphVisitor<T>> callee;
     private boolean aborted = false;
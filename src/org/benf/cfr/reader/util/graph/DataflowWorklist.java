@@ -0,0 +1,144 @@
+package org.benf.cfr.reader.util.graph;
+
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.collections.MapFactory;
+import org.benf.cfr.reader.util.functors.UnaryFunction;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Worklist for dataflow to a fixpoint - always hands out the pending node which is earliest in reverse post order
+ * from the entries.  Loops aside, a node's predecessors have settled before it's visited, so it's visited far fewer
+ * times than it would be in list order.
+ *
+ * Forwards, the entry is the first node, and the order follows targets.  Backwards, (see fromExits), the entries are
+ * the exits, and the order follows sources.
+ *
+ * This only changes the visiting order, so only use it for analyses whose fixpoint doesn't depend on order - one
+ * which does will get a different answer than it would in list order.
+ *
+ * Nodes which can't be reached from the entries come after those which can, in the order given or added.  Nodes are
+ * compared by identity.
+ */
+public class DataflowWorklist<T> {
+    private final List<T> nodes = ListFactory.newList();
+    private final Map<T, Integer> positions = MapFactory.newIdentityMap();
+    private final BitSet pending = new BitSet();
+    // Everything which has ever been pending.
+    private final BitSet seen = new BitSet();
+    // Nothing before this is pending.
+    private int lowest;
+
+    /*
+     * Everything in all starts pending.
+     */
+    public DataflowWorklist(List<? extends T> all, UnaryFunction<T, ? extends List<? extends T>> getTargets) {
+        if (!all.isEmpty()) addReversePostOrder(all.subList(0, 1), getTargets);
+        for (T node : all) {
+            position(node);
+        }
+        pending.set(0, nodes.size());
+        seen.set(0, nodes.size());
+    }
+
+    private DataflowWorklist() {
+    }
+
+    /*
+     * For a backward analysis - only the exits start pending, and the rest are reached as they're added.
+     */
+    public static <T> DataflowWorklist<T> fromExits(List<? extends T> exits, UnaryFunction<T, ? extends List<? extends T>> getSources) {
+        DataflowWorklist<T> res = new DataflowWorklist<T>();
+        res.addReversePostOrder(exits, getSources);
+        res.addAll(exits);
+        return res;
+    }
+
+    private void addReversePostOrder(List<? extends T> entries, UnaryFunction<T, ? extends List<? extends T>> getNext) {
+        Map<T, Boolean> visited = MapFactory.newIdentityMap();
+        List<T> postOrder = ListFactory.newList();
+        List<T> stack = ListFactory.newList();
+        int[] nextTarget = new int[16];
+        for (T entry : entries) {
+            if (visited.containsKey(entry)) continue;
+            stack.add(entry);
+            visited.put(entry, Boolean.TRUE);
+            nextTarget[0] = 0;
+            while (!stack.isEmpty()) {
+                int depth = stack.size() - 1;
+                T current = stack.get(depth);
+                List<? extends T> targets = getNext.invoke(current);
+                if (nextTarget[depth] < targets.size()) {
+                    T target = targets.get(nextTarget[depth]++);
+                    if (target == null || visited.containsKey(target)) continue;
+                    visited.put(target, Boolean.TRUE);
+                    stack.add(target);
+                    if (depth + 1 == nextTarget.length) nextTarget = Arrays.copyOf(nextTarget, nextTarget.length * 2);
+                    nextTarget[depth + 1] = 0;
+                } else {
+                    postOrder.add(current);
+                    stack.remove(depth);
+                }
+            }
+        }
+        for (int x = postOrder.size() - 1; x >= 0; --x) {
+            position(postOrder.get(x));
+        }
+    }
+
+    private int position(T node) {
+        Integer res = positions.get(node);
+        if (res == null) {
+            res = nodes.size();
+            nodes.add(node);
+            positions.put(node, res);
+        }
+        return res;
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public T removeFirst() {
+        int idx = pending.nextSetBit(lowest);
+        pending.clear(idx);
+        lowest = idx;
+        return nodes.get(idx);
+    }
+
+    public void add(T node) {
+        int idx = position(node);
+        pending.set(idx);
+        seen.set(idx);
+        if (idx < lowest) lowest = idx;
+    }
+
+    /*
+     * Only if node has never been pending - for when it needs visiting at least once, but nothing it depends on
+     * has changed.
+     */
+    public void addIfUnseen(T node) {
+        int idx = position(node);
+        if (seen.get(idx)) return;
+        add(node);
+    }
+
+    public void add(T node, boolean ifUnseen) {
+        if (ifUnseen) {
+            addIfUnseen(node);
+        } else {
+            add(node);
+        }
+    }
+
+    public void addAll(Collection<? extends T> ts) {
+        for (T t : ts) {
+            add(t);
+        }
+    }
+}
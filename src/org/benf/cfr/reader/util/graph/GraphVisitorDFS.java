@@ -6,15 +6,17 @@ import org.benf.cfr.reader.util.functors.BinaryProcedure;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 public class GraphVisitorDFS<T> implements GraphVisitor<T> {
-    private final Collection<? extends T> start;
+    private final List<? extends T> start;
     private final Set<T> visited = SetFactory.newSet();
     private final BinaryProcedure<T, GraphVisitor<T>> callee;
-    private final LinkedList<T> pending = ListFactory.newLinkedList();
-    private final LinkedList<T> enqueued = ListFactory.newLinkedList();
+    // Array backed - these see a lot of traffic, and linked list nodes add up.  So pending is a stack, and the last
+    // element is visited next.
+    private final List<T> pending = ListFactory.newList();
+    private final List<T> enqueued = ListFactory.newList();
     private boolean aborted = false;
 
     public GraphVisitorDFS(T first, BinaryProcedure<T, GraphVisitor<T>> callee) {
@@ -60,14 +62,14 @@ public class GraphVisitorDFS<T> implements GraphVisitor<T> {
     public void process() {
         pending.clear();
         enqueued.clear();
-        pending.addAll(start);
+        for (int x = start.size() - 1; x >= 0; --x) pending.add(start.get(x));
         while (!pending.isEmpty()) {
-            T current = pending.removeFirst();
-            if (!visited.contains(current)) {
-                visited.add(current);
+            T current = pending.remove(pending.size() - 1);
+            if (visited.add(current)) {
                 callee.call(current, this);
                 // Prefix pending with enqueued.
-                while (!enqueued.isEmpty()) pending.addFirst(enqueued.removeLast());
+                for (int x = enqueued.size() - 1; x >= 0; --x) pending.add(enqueued.get(x));
+                enqueued.clear();
             }
         }
 
@@ -0,0 +1,7 @@
+package org.benf.cfr.reader.util.output;
+
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
+
+public interface AnalysisTimingsDumper {
+    void dump(AnalysisProfile profile);
+}
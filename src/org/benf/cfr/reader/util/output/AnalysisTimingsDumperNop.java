@@ -0,0 +1,13 @@
+package org.benf.cfr.reader.util.output;
+
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
+
+public class AnalysisTimingsDumperNop implements AnalysisTimingsDumper {
+    public static final AnalysisTimingsDumper INSTANCE = new AnalysisTimingsDumperNop();
+
+    private AnalysisTimingsDumperNop() {}
+
+    @Override
+    public void dump(AnalysisProfile profile) {
+    }
+}
@@ -0,0 +1,105 @@
+package org.benf.cfr.reader.util.output;
+
+import org.benf.cfr.reader.api.SinkReturns;
+
+import java.util.List;
+
+/*
+ * Text forms of AnalysisProfile timings.  Times are in nanoseconds, allocations are -1 if not recorded.
+ */
+public class AnalysisTimingsFormat {
+    private AnalysisTimingsFormat() {
+    }
+
+    public static String toCsv(List<SinkReturns.PhaseTiming> timings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("recovery_pass,phase,count,time_ns,allocated_bytes\n");
+        for (SinkReturns.PhaseTiming timing : timings) {
+            appendCsv(sb, timing);
+        }
+        return sb.toString();
+    }
+
+    public static String toMethodCsv(List<SinkReturns.MethodPhaseTiming> timings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("class,method,descriptor,recovery_pass,phase,count,time_ns,allocated_bytes\n");
+        for (SinkReturns.MethodPhaseTiming timing : timings) {
+            sb.append(csvField(timing.getClassName())).append(',')
+                    .append(csvField(timing.getMethodName())).append(',')
+                    .append(csvField(timing.getMethodDescriptor())).append(',');
+            appendCsv(sb, timing);
+        }
+        return sb.toString();
+    }
+
+    private static void appendCsv(StringBuilder sb, SinkReturns.PhaseTiming timing) {
+        sb.append(timing.getRecoveryPass()).append(',')
+                .append(csvField(timing.getPhase())).append(',')
+                .append(timing.getInvocationCount()).append(',')
+                .append(timing.getTimeNanos()).append(',')
+                .append(timing.getAllocatedBytes()).append('\n');
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    public static String toJson(List<SinkReturns.PhaseTiming> timings, List<SinkReturns.MethodPhaseTiming> methodTimings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"phases\": [");
+        boolean first = true;
+        for (SinkReturns.PhaseTiming timing : timings) {
+            sb.append(first ? "\n    {" : ",\n    {");
+            appendJson(sb, timing);
+            sb.append('}');
+            first = false;
+        }
+        sb.append("\n  ],\n  \"methods\": [");
+        first = true;
+        for (SinkReturns.MethodPhaseTiming timing : methodTimings) {
+            sb.append(first ? "\n    {" : ",\n    {");
+            sb.append("\"class\": ").append(jsonString(timing.getClassName()))
+                    .append(", \"method\": ").append(jsonString(timing.getMethodName()))
+                    .append(", \"descriptor\": ").append(jsonString(timing.getMethodDescriptor()))
+                    .append(", ");
+            appendJson(sb, timing);
+            sb.append('}');
+            first = false;
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private static void appendJson(StringBuilder sb, SinkReturns.PhaseTiming timing) {
+        sb.append("\"recoveryPass\": ").append(timing.getRecoveryPass())
+                .append(", \"phase\": ").append(jsonString(timing.getPhase()))
+                .append(", \"count\": ").append(timing.getInvocationCount())
+                .append(", \"timeNanos\": ").append(timing.getTimeNanos())
+                .append(", \"allocatedBytes\": ").append(timing.getAllocatedBytes());
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int x = 0, len = s.length(); x < len; ++x) {
+            char c = s.charAt(x);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+}
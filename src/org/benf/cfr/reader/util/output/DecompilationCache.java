@@ -0,0 +1,305 @@
+package org.benf.cfr.reader.util.output;
+
+import org.benf.cfr.reader.bytecode.analysis.types.JavaTypeInstance;
+import org.benf.cfr.reader.entities.Method;
+import org.benf.cfr.reader.util.CfrVersionInfo;
+import org.benf.cfr.reader.util.collections.ListFactory;
+import org.benf.cfr.reader.util.getopt.Options;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+import org.benf.cfr.reader.util.getopt.PermittedOptionProvider;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * Persistent cache of decompiled top level classes, keyed by a hash of
+ *
+ * * the content of the class and its inner classes
+ * * the options which affect output
+ * * the CFR version
+ *
+ * So that classes which haven't changed since a previous run (eg a nightly run over the same dependencies) don't
+ * need to be analysed again.
+ *
+ * Note that the key does NOT cover other classes which were consulted during analysis (supertypes etc) - if those
+ * change in a way that would change this class's output, the cache will be stale.
+ */
+public class DecompilationCache {
+    private static final int MAGIC = 0xCFCAC4E0;
+    private static final int FORMAT_VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File dir;
+    private final String optionsKey;
+
+    private DecompilationCache(File dir, String optionsKey) {
+        this.dir = dir;
+        this.optionsKey = optionsKey;
+    }
+
+    /*
+     * Returns null if caching isn't enabled.
+     */
+    public static DecompilationCache create(Options options) {
+        String path = options.getOption(OptionsImpl.CACHE_DIR);
+        if (path == null) return null;
+        File dir = new File(path);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Couldn't create cache dir: " + dir);
+        }
+        return new DecompilationCache(dir, getOptionsKey(options));
+    }
+
+    /*
+     * Options which don't affect the content of what's emitted aren't part of the key.
+     */
+    private static final Set<String> IGNORED_OPTIONS = new TreeSet<String>(ListFactory.newList(
+            OptionsImpl.OUTPUT_DIR.getName(),
+            OptionsImpl.OUTPUT_PATH.getName(),
+            OptionsImpl.CLOBBER_FILES.getName(),
+            OptionsImpl.SILENT.getName(),
+            OptionsImpl.ANALYSIS_THREADS.getName(),
+            OptionsImpl.STREAM_JAR.getName(),
+            OptionsImpl.PREFETCH_CLASSES.getName(),
+            OptionsImpl.CACHE_DIR.getName(),
+            OptionsImpl.CLASS_PATH_INDEX.getName(),
+            OptionsImpl.CLASS_STUB_DIR.getName(),
+            OptionsImpl.ANALYSIS_TIMINGS.getName(),
+            OptionsImpl.ANALYSIS_ALLOCATIONS.getName()
+    ));
+
+    @SuppressWarnings("unchecked")
+    private static String getOptionsKey(Options options) {
+        StringBuilder sb = new StringBuilder();
+        for (PermittedOptionProvider.ArgumentParam<?, ?> arg : OptionsImpl.getFactory().getArguments()) {
+            if (!options.optionIsSet(arg)) continue;
+            if (IGNORED_OPTIONS.contains(arg.getName())) continue;
+            // If an option is explicitly set, its decoder doesn't need the parameter.
+            Object value = options.getOption((PermittedOptionProvider.ArgumentParam<Object, Object>) arg, null);
+            sb.append(arg.getName()).append('=').append(value).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public String getKey(Collection<byte[]> classContents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(CfrVersionInfo.VERSION_INFO.getBytes(UTF8));
+            digest.update((byte) 0);
+            digest.update(optionsKey.getBytes(UTF8));
+            for (byte[] content : classContents) {
+                digest.update((byte) 0);
+                digest.update(Integer.toString(content.length).getBytes(UTF8));
+                digest.update(content);
+            }
+            byte[] hash = digest.digest();
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(new File(dir, key.substring(0, 2)), key + ".cfr");
+    }
+
+    /*
+     * A corrupt or unreadable entry is just a miss.
+     */
+    public Entry get(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) return null;
+        try {
+            // Read whole, so that lengths can be checked against what's left - see readString.
+            DataInputStream is = new DataInputStream(new ByteArrayInputStream(readFully(file)));
+            try {
+                if (is.readInt() != MAGIC || is.readInt() != FORMAT_VERSION) return null;
+                String java = readString(is);
+                int errorCount = is.readInt();
+                List<MethodError> errors = ListFactory.newList();
+                for (int x = 0; x < errorCount; ++x) {
+                    String methodName = null;
+                    String methodDescriptor = null;
+                    if (is.readBoolean()) {
+                        methodName = readString(is);
+                        methodDescriptor = readString(is);
+                    }
+                    errors.add(new MethodError(methodName, methodDescriptor, readString(is)));
+                }
+                return new Entry(java, errors);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Written to a temporary file and renamed into place, so concurrent runs sharing a cache don't see partial entries.
+     */
+    public void put(String key, Entry entry) {
+        File file = getFile(key);
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) return;
+        File tmp = null;
+        try {
+            // Unique across processes, as well as threads.
+            tmp = File.createTempFile(key, ".tmp", parent);
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                os.writeInt(MAGIC);
+                os.writeInt(FORMAT_VERSION);
+                writeString(os, entry.java);
+                os.writeInt(entry.errors.size());
+                for (MethodError error : entry.errors) {
+                    boolean hasMethod = error.methodName != null;
+                    os.writeBoolean(hasMethod);
+                    if (hasMethod) {
+                        writeString(os, error.methodName);
+                        writeString(os, error.methodDescriptor);
+                    }
+                    writeString(os, error.error);
+                }
+            } finally {
+                os.close();
+            }
+            if (!tmp.renameTo(file)) {
+                // Probably someone else got there first.
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            if (tmp != null) tmp.delete();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) throw new IOException("Cache entry too large");
+        byte[] res = new byte[(int) length];
+        DataInputStream is = new DataInputStream(new FileInputStream(file));
+        try {
+            is.readFully(res);
+        } finally {
+            is.close();
+        }
+        return res;
+    }
+
+    /*
+     * is must be over the whole entry, so that available() is what's left of it.
+     */
+    private static String readString(DataInputStream is) throws IOException {
+        int length = is.readInt();
+        if (length < 0 || length > is.available()) throw new IOException("Corrupt cache entry");
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeString(DataOutputStream os, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    public static class MethodError {
+        private final String methodName;
+        private final String methodDescriptor;
+        private final String error;
+
+        private MethodError(String methodName, String methodDescriptor, String error) {
+            this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+            this.error = error;
+        }
+
+        private Method findMethod(List<Method> methods) {
+            if (methodName == null) return null;
+            for (Method method : methods) {
+                if (method.getName().equals(methodName) && method.getMethodPrototype().getOriginalDescriptor().equals(methodDescriptor)) {
+                    return method;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Entry {
+        private final String java;
+        private final List<MethodError> errors;
+
+        private Entry(String java, List<MethodError> errors) {
+            this.java = java;
+            this.errors = errors;
+        }
+
+        /*
+         * Emit exactly what the original dumper would have.  We can't just print the whole thing, as that would
+         * quote the newlines - and note that the final newline is only ever pending.
+         */
+        public void replay(Dumper d, JavaTypeInstance classType, List<Method> methods, SummaryDumper summaryDumper) {
+            int start = 0;
+            int idx;
+            while ((idx = java.indexOf('\n', start)) >= 0) {
+                if (idx > start) d.print(java.substring(start, idx));
+                d.newln();
+                start = idx + 1;
+            }
+            if (start < java.length()) d.print(java.substring(start));
+            d.newln();
+            for (MethodError error : errors) {
+                summaryDumper.notifyError(classType, error.findMethod(methods), error.error);
+            }
+        }
+    }
+
+    /*
+     * Collects the output of a class (and any errors noted against its methods) as it's dumped,
+     * forwarding errors to the real collector.
+     */
+    public static class Recorder implements MethodErrorCollector {
+        private final StringBuilder sb = new StringBuilder();
+        private final List<MethodError> errors = ListFactory.newList();
+        private final MethodErrorCollector delegate;
+
+        public Recorder(MethodErrorCollector delegate) {
+            this.delegate = delegate;
+        }
+
+        public StringBuilder getStringBuilder() {
+            return sb;
+        }
+
+        @Override
+        public void addSummaryError(Method method, String s) {
+            if (method == null) {
+                errors.add(new MethodError(null, null, s));
+            } else {
+                errors.add(new MethodError(method.getName(), method.getMethodPrototype().getOriginalDescriptor(), s));
+            }
+            delegate.addSummaryError(method, s);
+        }
+
+        public Entry getEntry() {
+            return new Entry(sb.toString(), errors);
+        }
+    }
+}
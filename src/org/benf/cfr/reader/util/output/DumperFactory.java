@@ -7,6 +7,9 @@ public interface DumperFactory {
 
     Dumper getNewTopLevelDumper(JavaTypeInstance classType, SummaryDumper summaryDumper, TypeUsageInformation typeUsageInformation, IllegalIdentifierDump illegalIdentifierDump);
 
+    // If not, (eg we're producing a token stream), previously rendered text can't stand in for dumping a class.
+    boolean producesPlainText();
+
     // If we support line numbers, we'll be wrapped around the top level dumper.
     Dumper wrapLineNoDumper(Dumper dumper);
 
@@ -16,5 +19,7 @@ public interface DumperFactory {
 
     ExceptionDumper getExceptionDumper();
 
+    AnalysisTimingsDumper getAnalysisTimingsDumper();
+
     DumperFactory getFactoryWithPrefix(String prefix, int version);
 }
@@ -0,0 +1,49 @@
+package org.benf.cfr.reader.util.output;
+
+import org.benf.cfr.reader.api.SinkReturns;
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/*
+ * Writes timings into the same directory as the summary.
+ */
+public class FileAnalysisTimingsDumper implements AnalysisTimingsDumper {
+    private final String dir;
+
+    public FileAnalysisTimingsDumper(String dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public void dump(AnalysisProfile profile) {
+        List<SinkReturns.PhaseTiming> timings = profile.getPhaseTimings();
+        List<SinkReturns.MethodPhaseTiming> methodTimings = profile.getMethodPhaseTimings();
+        write("analysis-timings.csv", AnalysisTimingsFormat.toCsv(timings));
+        write("analysis-timings-methods.csv", AnalysisTimingsFormat.toMethodCsv(methodTimings));
+        write("analysis-timings.json", AnalysisTimingsFormat.toJson(timings, methodTimings));
+    }
+
+    private void write(String name, String content) {
+        File file = new File(dir, name);
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IllegalStateException("Couldn't create dir: " + parent);
+        }
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write(content);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new Dumper.CannotCreate(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.benf.cfr.reader.util.output;
 
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
 import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.bytecode.analysis.types.JavaTypeInstance;
 import org.benf.cfr.reader.state.OsInfo;
@@ -110,6 +111,11 @@ public class InternalDumperFactoryImpl implements DumperFactory {
         }
     }
 
+    @Override
+    public boolean producesPlainText() {
+        return true;
+    }
+
     @Override
     public Dumper wrapLineNoDumper(Dumper dumper) {
         // There's really not a reason to do this, but it's useful for testing.
@@ -147,6 +153,25 @@ public class InternalDumperFactoryImpl implements DumperFactory {
         return new FileSummaryDumper(targetInfo.getFirst(), options, new AdditionalComments());
     }
 
+    /*
+     * Timings go alongside the summary - if there isn't one, the totals are handy to see on console.
+     */
+    @Override
+    public AnalysisTimingsDumper getAnalysisTimingsDumper() {
+        Pair<String, Boolean> targetInfo = getPathAndClobber();
+
+        if (targetInfo == null) {
+            return new AnalysisTimingsDumper() {
+                @Override
+                public void dump(AnalysisProfile profile) {
+                    System.err.print(AnalysisTimingsFormat.toCsv(profile.getPhaseTimings()));
+                }
+            };
+        }
+
+        return new FileAnalysisTimingsDumper(targetInfo.getFirst());
+    }
+
     @Override
     public ProgressDumper getProgressDumper() {
         return progressDumper;
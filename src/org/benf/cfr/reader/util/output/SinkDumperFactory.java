@@ -2,6 +2,7 @@ package org.benf.cfr.reader.util.output;
 
 import org.benf.cfr.reader.api.OutputSinkFactory;
 import org.benf.cfr.reader.api.SinkReturns;
+import org.benf.cfr.reader.bytecode.AnalysisProfile;
 import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
 import org.benf.cfr.reader.bytecode.analysis.types.ClassNameUtils;
 import org.benf.cfr.reader.bytecode.analysis.types.JavaTypeInstance;
@@ -40,10 +41,34 @@ public class SinkDumperFactory implements DumperFactory {
         return new SinkDumperFactory(this, version);
     }
 
-    @Override
-    public Dumper getNewTopLevelDumper(JavaTypeInstance classType, SummaryDumper summaryDumper, TypeUsageInformation typeUsageInformation, IllegalIdentifierDump illegalIdentifierDump) {
+    private List<OutputSinkFactory.SinkClass> getSupportedJavaSinks() {
         List<OutputSinkFactory.SinkClass> supported = sinkFactory.getSupportedSinks(OutputSinkFactory.SinkType.JAVA, Arrays.asList(OutputSinkFactory.SinkClass.DECOMPILED_MULTIVER, OutputSinkFactory.SinkClass.DECOMPILED, OutputSinkFactory.SinkClass.TOKEN_STREAM, OutputSinkFactory.SinkClass.STRING));
         if (supported == null) supported = justString;
+        return supported;
+    }
+
+    /*
+     * As getTopLevelDumper2 would choose.
+     */
+    @Override
+    public boolean producesPlainText() {
+        for (OutputSinkFactory.SinkClass sinkClass : getSupportedJavaSinks()) {
+            switch (sinkClass) {
+                case DECOMPILED_MULTIVER:
+                case DECOMPILED:
+                case STRING:
+                    return true;
+                case TOKEN_STREAM:
+                    return false;
+                default:
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Dumper getNewTopLevelDumper(JavaTypeInstance classType, SummaryDumper summaryDumper, TypeUsageInformation typeUsageInformation, IllegalIdentifierDump illegalIdentifierDump) {
+        List<OutputSinkFactory.SinkClass> supported = getSupportedJavaSinks();
         MethodErrorCollector methodErrorCollector = new SummaryDumperMethodErrorCollector(classType, summaryDumper);
         return getTopLevelDumper2(classType, typeUsageInformation, illegalIdentifierDump, supported, methodErrorCollector);
     }
@@ -262,6 +287,25 @@ public class SinkDumperFactory implements DumperFactory {
         return new SinkStringExceptionDumper(stringSink);
     }
 
+    @Override
+    public AnalysisTimingsDumper getAnalysisTimingsDumper() {
+        List<OutputSinkFactory.SinkClass> supported = sinkFactory.getSupportedSinks(OutputSinkFactory.SinkType.ANALYSIS_TIMINGS, Arrays.asList(OutputSinkFactory.SinkClass.PHASE_TIMING, OutputSinkFactory.SinkClass.METHOD_PHASE_TIMING, OutputSinkFactory.SinkClass.STRING));
+        if (supported == null) supported = justString;
+        for (OutputSinkFactory.SinkClass sinkClass : supported) {
+            switch (sinkClass) {
+                case PHASE_TIMING:
+                    return new SinkPhaseTimingDumper(sinkFactory.<SinkReturns.PhaseTiming>getSink(OutputSinkFactory.SinkType.ANALYSIS_TIMINGS, sinkClass));
+                case METHOD_PHASE_TIMING:
+                    return new SinkMethodPhaseTimingDumper(sinkFactory.<SinkReturns.MethodPhaseTiming>getSink(OutputSinkFactory.SinkType.ANALYSIS_TIMINGS, sinkClass));
+                case STRING:
+                    return new SinkStringAnalysisTimingsDumper(sinkFactory.<String>getSink(OutputSinkFactory.SinkType.ANALYSIS_TIMINGS, sinkClass));
+                default:
+                    continue;
+            }
+        }
+        return AnalysisTimingsDumperNop.INSTANCE;
+    }
+
     private static class NopStringSink implements OutputSinkFactory.Sink<String> {
         @Override
         public void write(String sinkable) {
@@ -286,6 +330,49 @@ public class SinkDumperFactory implements DumperFactory {
         }
     }
 
+    private static class SinkPhaseTimingDumper implements AnalysisTimingsDumper {
+        private final OutputSinkFactory.Sink<SinkReturns.PhaseTiming> sink;
+
+        SinkPhaseTimingDumper(OutputSinkFactory.Sink<SinkReturns.PhaseTiming> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void dump(AnalysisProfile profile) {
+            for (SinkReturns.PhaseTiming timing : profile.getPhaseTimings()) {
+                sink.write(timing);
+            }
+        }
+    }
+
+    private static class SinkMethodPhaseTimingDumper implements AnalysisTimingsDumper {
+        private final OutputSinkFactory.Sink<SinkReturns.MethodPhaseTiming> sink;
+
+        SinkMethodPhaseTimingDumper(OutputSinkFactory.Sink<SinkReturns.MethodPhaseTiming> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void dump(AnalysisProfile profile) {
+            for (SinkReturns.MethodPhaseTiming timing : profile.getMethodPhaseTimings()) {
+                sink.write(timing);
+            }
+        }
+    }
+
+    private static class SinkStringAnalysisTimingsDumper implements AnalysisTimingsDumper {
+        private final OutputSinkFactory.Sink<String> sink;
+
+        SinkStringAnalysisTimingsDumper(OutputSinkFactory.Sink<String> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void dump(AnalysisProfile profile) {
+            sink.write(AnalysisTimingsFormat.toCsv(profile.getPhaseTimings()));
+        }
+    }
+
     private static class SinkStringExceptionDumper implements ExceptionDumper {
         private final OutputSinkFactory.Sink<String> sink;
 